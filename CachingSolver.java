@@ -0,0 +1,71 @@
+/**
+ * Looks boards up in a shared {@link SudokuSolutionCache} by canonical form
+ * before handing them to the wrapped solver, so repeated, relabeled,
+ * transposed or permuted puzzles are solved once. One instance per thread.
+ */
+class CachingSolver implements SudokuSolver {
+
+    private final SudokuSolver solver;
+    private final SudokuSolutionCache cache;
+    private final SudokuCanonicalForm canonicalForm;
+
+    //whether the last board went to the wrapped solver
+    private boolean delegated = false;
+
+    public CachingSolver(SudokuSolver solver, SudokuSolutionCache cache, int size)
+    {
+        this.solver = solver;
+        this.cache = cache;
+        this.canonicalForm = new SudokuCanonicalForm(size);
+    }
+
+    public SudokuSolver getSolver()
+    {
+        return solver;
+    }
+
+    @Override
+    public boolean solve(char[][] board)
+    {
+        delegated = true;
+
+        //boards of another shape are reported invalid by the solver
+        if(!canonicalForm.compute(board))
+            return solver.solve(board);
+
+        final String key = canonicalForm.key();
+        char[] solution = cache.get(key);
+        if(solution != null)
+        {
+            delegated = false;
+            canonicalForm.applySolution(solution, board);
+            return true;
+        }
+
+        //invalid and unsolvable boards are not cached, they fail again the same way
+        if(!solver.solve(board))
+            return false;
+
+        cache.put(key, canonicalForm.canonicalSolution(board));
+        return true;
+    }
+
+    @Override
+    public void setDeadline(long deadline)
+    {
+        solver.setDeadline(deadline);
+    }
+
+    @Override
+    public void cancel()
+    {
+        solver.cancel();
+    }
+
+    //only the wrapped solver gives up, and only when it ran
+    @Override
+    public boolean isBudgetExceeded()
+    {
+        return delegated && solver.isBudgetExceeded();
+    }
+}
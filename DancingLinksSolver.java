@@ -0,0 +1,318 @@
+import java.util.Arrays;
+
+/**
+ * Exact cover solver (Knuth's Algorithm X with dancing links).
+ *
+ * The matrix of candidates (cell, number) against constraints (cell filled,
+ * number in row, in column, in region), 729 x 324 for 9x9 boards, is built
+ * once per board size into flat int arrays. Each solve starts from a copy of
+ * those pristine links, so an instance is reused across puzzles without
+ * allocating.
+ */
+class DancingLinksSolver implements SudokuSolver {
+
+    //pristine links of one board size, shared by every instance
+    private static final class Matrix {
+
+        final int nColumns;
+        final int root;
+        final int nNodes;
+
+        final int[] left;
+        final int[] right;
+        final int[] up;
+        final int[] down;
+        final int[] sizes;
+
+        //column header of every node and matrix row of every node
+        final int[] column;
+        final int[] row;
+
+        Matrix(SudokuGeometry geometry)
+        {
+            final int size = geometry.size;
+            final int nCells = geometry.nCells;
+            final int nRows = nCells*size;
+
+            nColumns = 4*nCells;
+            root = nColumns;
+            nNodes = nColumns + 1 + 4*nRows;
+
+            left = new int[nNodes];
+            right = new int[nNodes];
+            up = new int[nNodes];
+            down = new int[nNodes];
+            sizes = new int[nColumns];
+            column = new int[nNodes];
+            row = new int[nNodes];
+
+            for(int c = 0; c <= root; c++)
+            {
+                left[c] = c == 0 ? root : c - 1;
+                right[c] = c == root ? 0 : c + 1;
+                up[c] = c;
+                down[c] = c;
+                column[c] = c;
+            }
+
+            int node = root + 1;
+            for(int matrixRow = 0; matrixRow < nRows; matrixRow++)
+            {
+                final int cell = matrixRow / size;
+                final int n = matrixRow % size;
+
+                final int[] columns = {
+                    cell,
+                    nCells + geometry.rowOf[cell]*size + n,
+                    2*nCells + geometry.columnOf[cell]*size + n,
+                    3*nCells + geometry.regionOf[cell]*size + n
+                };
+
+                for(int k = 0; k < 4; k++, node++)
+                {
+                    final int header = columns[k];
+
+                    //append at the bottom of the column
+                    up[node] = up[header];
+                    down[node] = header;
+                    down[up[header]] = node;
+                    up[header] = node;
+                    sizes[header]++;
+
+                    //circular list of the 4 nodes of the row
+                    left[node] = k == 0 ? node + 3 : node - 1;
+                    right[node] = k == 3 ? node - 3 : node + 1;
+
+                    column[node] = header;
+                    row[node] = matrixRow;
+                }
+            }
+            assert node == nNodes;
+        }
+    }
+
+    private static final Matrix[] MATRICES = new Matrix[SudokuGeometry.MAX_BOX_SIZE + 1];
+
+    private static synchronized Matrix matrixOf(SudokuGeometry geometry)
+    {
+        if(MATRICES[geometry.boxSize] == null)
+            MATRICES[geometry.boxSize] = new Matrix(geometry);
+        return MATRICES[geometry.boxSize];
+    }
+
+    private final SudokuGeometry geometry;
+    private final int size;
+    private final int nCells;
+
+    private final Matrix matrix;
+    private final int root;
+    //column header and matrix row of every node, read only
+    private final int[] columnOf;
+    private final int[] rowOf;
+
+    private final int[] left;
+    private final int[] right;
+    private final int[] up;
+    private final int[] down;
+    private final int[] sizes;
+
+    private final boolean[] covered;
+    private final int[] solution;
+
+    //every CLOCK_INTERVAL nodes the search reads the clock and cancel, and gives up past the deadline or once cancelled
+    private static final int CLOCK_INTERVAL = 256;
+    private volatile long deadline = NO_DEADLINE;
+    private volatile boolean cancelled = false;
+    private long searchDeadline = NO_DEADLINE;
+    private long nodes = 0;
+    private boolean budgetExceeded = false;
+
+    public DancingLinksSolver()
+    {
+        this(SudokuGame.SUDOKU_SIZE);
+    }
+
+    public DancingLinksSolver(int size)
+    {
+        this.geometry = SudokuGeometry.of(size);
+        this.size = size;
+        this.nCells = geometry.nCells;
+
+        this.matrix = matrixOf(geometry);
+        this.root = matrix.root;
+        this.columnOf = matrix.column;
+        this.rowOf = matrix.row;
+
+        left = new int[matrix.nNodes];
+        right = new int[matrix.nNodes];
+        up = new int[matrix.nNodes];
+        down = new int[matrix.nNodes];
+        sizes = new int[matrix.nColumns];
+        covered = new boolean[matrix.nColumns];
+        solution = new int[nCells];
+    }
+
+    private int firstNodeOf(int row)
+    {
+        return root + 1 + 4*row;
+    }
+
+    @Override
+    public void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    @Override
+    public boolean isBudgetExceeded()
+    {
+        return budgetExceeded;
+    }
+
+    @Override
+    public boolean solve(char[][] board)
+    {
+        //cleared before the deadline is read, see SudokuGame.reset
+        cancelled = false;
+        budgetExceeded = false;
+        searchDeadline = deadline;
+        nodes = 0;
+
+        if(board.length != size)
+        {
+            System.err.println("Invalid board!");
+            return false;
+        }
+
+        System.arraycopy(matrix.left, 0, left, 0, matrix.nNodes);
+        System.arraycopy(matrix.right, 0, right, 0, matrix.nNodes);
+        System.arraycopy(matrix.up, 0, up, 0, matrix.nNodes);
+        System.arraycopy(matrix.down, 0, down, 0, matrix.nNodes);
+        System.arraycopy(matrix.sizes, 0, sizes, 0, matrix.nColumns);
+        Arrays.fill(covered, false);
+
+        int clues = 0;
+        for(int r = 0; r < size; r++)
+        {
+            if(board[r].length != size)
+            {
+                System.err.println("Invalid board!");
+                return false;
+            }
+
+            for(int c = 0; c < size; c++)
+            {
+                final int n = geometry.toNumber(board[r][c]);
+                if(n == SudokuCell.FREE_CELL)
+                    continue;
+
+                final int first = firstNodeOf((r*size + c)*size + n);
+                for(int k = 0; k < 4; k++)
+                    if(covered[columnOf[first + k]])
+                    {
+                        System.err.println("Invalid board!");
+                        return false;
+                    }
+
+                for(int k = 0; k < 4; k++)
+                    cover(columnOf[first + k]);
+                clues++;
+            }
+        }
+
+        if(!search(clues))
+        {
+            System.err.println(budgetExceeded ? "Unsolved: budget exceeded!" : "Board has no solutions!");
+            return false;
+        }
+
+        for(int i = clues; i < nCells; i++)
+        {
+            final int row = solution[i];
+            final int cell = row / size;
+            board[cell / size][cell % size] = geometry.toSymbol(row % size);
+        }
+
+        return true;
+    }
+
+    private boolean search(int depth)
+    {
+        if(right[root] == root)
+            return true;
+        if(isOverBudget())
+            return false;
+
+        //column with the fewest rows left
+        int column = right[root];
+        for(int c = right[column]; c != root && sizes[column] > 1; c = right[c])
+            if(sizes[c] < sizes[column])
+                column = c;
+
+        if(sizes[column] == 0)
+            return false;
+
+        cover(column);
+        for(int r = down[column]; r != column; r = down[r])
+        {
+            solution[depth] = rowOf[r];
+            for(int j = right[r]; j != r; j = right[j])
+                cover(columnOf[j]);
+
+            if(search(depth + 1))
+                return true;
+
+            for(int j = left[r]; j != r; j = left[j])
+                uncover(columnOf[j]);
+            if(budgetExceeded)
+                break;
+        }
+        uncover(column);
+
+        return false;
+    }
+
+    private boolean isOverBudget()
+    {
+        if(!budgetExceeded && ++nodes % CLOCK_INTERVAL == 0
+            && (cancelled || (searchDeadline != NO_DEADLINE && System.nanoTime() - searchDeadline > 0)))
+            budgetExceeded = true;
+        return budgetExceeded;
+    }
+
+    private void cover(int column)
+    {
+        covered[column] = true;
+        right[left[column]] = right[column];
+        left[right[column]] = left[column];
+
+        for(int i = down[column]; i != column; i = down[i])
+            for(int j = right[i]; j != i; j = right[j])
+            {
+                down[up[j]] = down[j];
+                up[down[j]] = up[j];
+                sizes[columnOf[j]]--;
+            }
+    }
+
+    private void uncover(int column)
+    {
+        for(int i = up[column]; i != column; i = up[i])
+            for(int j = left[i]; j != i; j = left[j])
+            {
+                sizes[columnOf[j]]++;
+                down[up[j]] = j;
+                up[down[j]] = j;
+            }
+
+        right[left[column]] = column;
+        left[right[column]] = column;
+        covered[column] = false;
+    }
+}
@@ -0,0 +1,68 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Consults a {@link SudokuSolutionStore} before handing boards to the
+ * wrapped solver, and stores what it solves. One instance per thread.
+ */
+class StoredSolver implements SudokuSolver {
+
+    private final SudokuSolver solver;
+    private final SudokuSolutionStore store;
+    private final byte[] key = new byte[SudokuSolutionStore.KEY_SIZE];
+
+    //whether the last board went to the wrapped solver
+    private boolean delegated = false;
+
+    public StoredSolver(SudokuSolver solver, SudokuSolutionStore store)
+    {
+        this.solver = solver;
+        this.store = store;
+    }
+
+    @Override
+    public boolean solve(char[][] board)
+    {
+        delegated = true;
+
+        //boards of another shape are reported invalid by the solver
+        if(!SudokuSolutionStore.toKey(board, key))
+            return solver.solve(board);
+
+        if(store.find(key, board))
+        {
+            delegated = false;
+            return true;
+        }
+
+        if(!solver.solve(board))
+            return false;
+
+        try {
+            store.add(key, board);
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public void setDeadline(long deadline)
+    {
+        solver.setDeadline(deadline);
+    }
+
+    @Override
+    public void cancel()
+    {
+        solver.cancel();
+    }
+
+    //only the wrapped solver gives up, and only when it ran
+    @Override
+    public boolean isBudgetExceeded()
+    {
+        return delegated && solver.isBudgetExceeded();
+    }
+}
@@ -1,70 +1,339 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
 import java.util.LinkedList;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class Sudoku {
 
-    public static final int GAMES_PER_THREAD = 8;
     public static void main(String[] args) throws IOException, InterruptedException {
-        InputStream input = System.in;
-        // ExecutorService executor = Executors.newWorkStealingPool(4);
-        ExecutorService executor = Executors.newWorkStealingPool();
+        String inputFile = null;
+        boolean ordered = true;
+        boolean parallelSearch = false;
+        String engine = "propagation";
+        boolean reportStats = false;
+        int window = SudokuResultWriter.DEFAULT_WINDOW;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int size = SudokuGame.SUDOKU_SIZE;
+        int cacheSize = 0;
+        String storeFile = null;
+        int storeCapacity = SudokuSolutionStore.DEFAULT_CAPACITY;
+        String outputFormat = "text";
+        String outputFile = null;
+        String errorsFile = null;
+        String schedule = "cost";
+        int gamesPerBatch = 0;
+        long solutionLimit = 0;
+        long maxGuesses = 0;
+        long timeLimitMillis = 0;
+        long deadlineMillis = 0;
+        EnumSet<SudokuTechnique> techniques = EnumSet.noneOf(SudokuTechnique.class);
 
-        if(args.length > 0)
-            input = new FileInputStream(new File(args[0]));
-        else
-            System.out.println("Parsing input from stdin");
+        for(String arg : args)
+        {
+            if(arg.equals("--unordered"))
+                ordered = false;
+            else if(arg.equals("--parallel-search"))
+                parallelSearch = true;
+            else if(arg.equals("--stats"))
+                reportStats = true;
+            else if(arg.startsWith("--window="))
+                window = Integer.parseInt(arg.substring("--window=".length()));
+            else if(arg.startsWith("--engine="))
+                engine = arg.substring("--engine=".length());
+            else if(arg.startsWith("--threads="))
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            else if(arg.startsWith("--size="))
+                size = Integer.parseInt(arg.substring("--size=".length()));
+            else if(arg.startsWith("--cache="))
+                cacheSize = Integer.parseInt(arg.substring("--cache=".length()));
+            else if(arg.startsWith("--store="))
+                storeFile = arg.substring("--store=".length());
+            else if(arg.startsWith("--store-capacity="))
+                storeCapacity = Integer.parseInt(arg.substring("--store-capacity=".length()));
+            else if(arg.startsWith("--output="))
+                outputFormat = arg.substring("--output=".length());
+            else if(arg.equals("--unique"))
+                solutionLimit = 2;
+            else if(arg.startsWith("--count="))
+                solutionLimit = Long.parseLong(arg.substring("--count=".length()));
+            else if(arg.startsWith("--techniques="))
+                techniques = parseTechniques(arg.substring("--techniques=".length()));
+            else if(arg.startsWith("--schedule="))
+                schedule = arg.substring("--schedule=".length());
+            else if(arg.startsWith("--chunk="))
+                gamesPerBatch = Integer.parseInt(arg.substring("--chunk=".length()));
+            else if(arg.startsWith("--output-file="))
+                outputFile = arg.substring("--output-file=".length());
+            else if(arg.startsWith("--max-guesses="))
+                maxGuesses = Long.parseLong(arg.substring("--max-guesses=".length()));
+            else if(arg.startsWith("--time-limit="))
+                timeLimitMillis = Long.parseLong(arg.substring("--time-limit=".length()));
+            else if(arg.startsWith("--deadline="))
+                deadlineMillis = Long.parseLong(arg.substring("--deadline=".length()));
+            else if(arg.startsWith("--errors="))
+                errorsFile = arg.substring("--errors=".length());
+            else
+                inputFile = arg;
+        }
+
+        if(!SudokuGeometry.isValidSize(size))
+        {
+            System.err.println("Unsupported size: " + size + " (expected 4, 9, 16, 25 or 36)");
+            System.exit(1);
+        }
+
+        if(!schedule.equals("cost") && !schedule.equals("fifo"))
+        {
+            System.err.println("Unknown schedule: " + schedule + " (expected cost or fifo)");
+            System.exit(1);
+        }
+        if(threads < 1 || gamesPerBatch < 0)
+        {
+            System.err.println("--threads must be positive and --chunk positive, or 0 to size batches by cost");
+            System.exit(1);
+        }
+
+        if(solutionLimit < 0 || (solutionLimit > 0 && (!engine.equals("propagation") || cacheSize > 0 || storeFile != null)))
+        {
+            System.err.println("--count and --unique need a positive limit and the propagation engine, without --cache or --store");
+            System.exit(1);
+        }
 
-        var results = new LinkedList<SudokuGame>();
-        
-        try(var reader = new BufferedReader(new InputStreamReader(input)))
+        //per puzzle budgets are enforced by the game's search, the deadline by every engine and the pipeline
+        if(maxGuesses < 0 || timeLimitMillis < 0 || deadlineMillis < 0
+            || ((maxGuesses > 0 || timeLimitMillis > 0) && (!engine.equals("propagation") || cacheSize > 0 || storeFile != null)))
         {
-            while(reader.ready()) {
-                var workerGames = new LinkedList<SudokuGame>();
+            System.err.println("--max-guesses and --time-limit need the propagation engine, without --cache or --store, and no budget can be negative");
+            System.exit(1);
+        }
 
-                for(int i = 0; i < GAMES_PER_THREAD; i++)
+        if(!outputFormat.equals("text") && !outputFormat.equals("compact") && !outputFormat.equals("binary"))
+        {
+            System.err.println("Unknown output format: " + outputFormat + " (expected text, compact or binary)");
+            System.exit(1);
+        }
+
+        //binary input is recognized by its header, which also gives the board size
+        SudokuReader reader;
+        if(inputFile != null)
+        {
+            Path path = Path.of(inputFile);
+            if(isBinary(path))
+            {
+                var binary = SudokuBinaryReader.open(path);
+                size = binary.getSize();
+                reader = binary;
+            }
+            else
+                reader = SudokuParser.open(path, size);
+        }
+        else
+        {
+            //only the default layout keeps messages on stdout, the others may be read back
+            (outputFormat.equals("text") ? System.out : System.err).println("Parsing input from stdin");
+            var in = new BufferedInputStream(System.in, 1 << 16);
+            if(isBinary(in))
+            {
+                var binary = SudokuBinaryReader.open(in);
+                size = binary.getSize();
+                reader = binary;
+            }
+            else
+                reader = SudokuParser.open(in, size);
+        }
+
+        final boolean useMultithreading = parallelSearch;
+        final int boardSize = size;
+        final EnumSet<SudokuTechnique> eliminations = techniques;
+        final long guessBudget = maxGuesses;
+        final long nanosBudget = timeLimitMillis*1_000_000;
+        Supplier<SudokuSolver> solverFactory;
+        switch(engine)
+        {
+            case "propagation":
+                solverFactory = () -> {
+                    var game = new SudokuGame(boardSize, useMultithreading);
+                    game.setEliminations(eliminations);
+                    game.setBudget(guessBudget, nanosBudget);
+                    return game;
+                };
+                break;
+            case "dlx":
+                solverFactory = () -> new DancingLinksSolver(boardSize);
+                break;
+            case "sweep":
+                if(size > SudokuSweepSolver.MAX_SIZE)
                 {
-                    var board = SudokuGame.parseSudokuBoard(reader);
-                    if(board == null)
-                        continue;
-                    
-                    var game = new SudokuGame(board);
-
-                    results.add(game);
-                    workerGames.add(game);
+                    System.err.println("The sweep engine supports boards up to " + SudokuSweepSolver.MAX_SIZE + "x" + SudokuSweepSolver.MAX_SIZE);
+                    System.exit(1);
                 }
+                final SudokuLanes lanes = SudokuLanes.of(SudokuGeometry.of(size));
+                if(reportStats)
+                    System.err.println("sweep kernels: " + lanes.describe());
+                solverFactory = () -> new SudokuSweepSolver(lanes);
+                break;
+            case "lockstep":
+                if(size > SudokuLockstepSolver.MAX_SIZE)
+                {
+                    System.err.println("The lockstep engine supports boards up to " + SudokuLockstepSolver.MAX_SIZE + "x" + SudokuLockstepSolver.MAX_SIZE);
+                    System.exit(1);
+                }
+                solverFactory = () -> new SudokuLockstepSolver(boardSize);
+                break;
+            default:
+                System.err.println("Unknown engine: " + engine + " (expected propagation, dlx, sweep or lockstep)");
+                System.exit(1);
+                return;
+        }
 
-                if(workerGames.isEmpty())
-                    continue;
+        if(storeFile != null && size != SudokuGame.SUDOKU_SIZE)
+        {
+            System.err.println("The solution store only holds 9x9 boards");
+            System.exit(1);
+        }
+
+        final SudokuSolutionStore store = storeFile != null
+            ? SudokuSolutionStore.open(Path.of(storeFile), storeCapacity)
+            : null;
+        if(store != null)
+        {
+            final var engineFactory = solverFactory;
+            solverFactory = () -> new StoredSolver(engineFactory.get(), store);
+        }
+
+        //the in-memory cache goes in front of the store
+        SudokuSolutionCache cache = null;
+        if(cacheSize > 0)
+        {
+            final var engineFactory = solverFactory;
+            final var solutions = cache = new SudokuSolutionCache(cacheSize);
+            solverFactory = () -> new CachingSolver(engineFactory.get(), solutions, boardSize);
+        }
+
+        //text layouts are written in large blocks already, binary records go through a buffer
+        final OutputStream file = outputFile != null
+            ? Channels.newOutputStream(FileChannel.open(Path.of(outputFile),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+            : null;
+        final OutputStream out = file != null ? file : System.out;
 
-                executor.execute(() -> {
-                    for(var game : workerGames) {
-                        game.solveSudoku();
-                    }
-                });
+        SudokuOutput output;
+        switch(outputFormat)
+        {
+            case "compact":
+                output = SudokuTextOutput.compact(out, size);
+                break;
+            case "binary":
+                output = new SudokuBinaryOutput(new BufferedOutputStream(out, 1 << 16), size);
+                break;
+            default:
+                output = SudokuTextOutput.grid(out, size);
+        }
+
+        //rejected boards go to stderr, or one per line to the errors file
+        final PrintStream errors = errorsFile != null
+            ? new PrintStream(new BufferedOutputStream(Files.newOutputStream(Path.of(errorsFile))), false)
+            : null;
+        final PrintStream rejects = errors != null ? errors : System.err;
+
+        int exitStatus = 0;
+        try(reader; store; file; errors)
+        {
+            var batchCapacity = gamesPerBatch > 0 ? gamesPerBatch : SudokuPipeline.MAX_GAMES_PER_BATCH;
+            var writer = new SudokuResultWriter(output, ordered, window, batchCapacity, size);
+            var pipeline = new SudokuPipeline(threads, SudokuPipeline.Schedule.valueOf(schedule.toUpperCase()), gamesPerBatch,
+                solverFactory, reportStats, writer);
+            pipeline.setValidation(rejects::println);
+            if(solutionLimit > 0)
+                pipeline.setSolutionLimit(solutionLimit);
+            if(deadlineMillis > 0)
+                pipeline.setDeadline(System.nanoTime() + deadlineMillis*1_000_000);
+            //the boards read before the failure are written, unsolved if they were not done
+            try {
+                pipeline.run(reader);
+            }
+            catch(IOException e) {
+                System.err.println("Failed to read puzzles: " + e.getMessage());
+                exitStatus = 1;
             }
+
+            //lets scripts reject a file with any invalid or ambiguous puzzle, or tell that some were given up
+            if(exitStatus == 0 && solutionLimit > 0 && (pipeline.getNotUniqueCount() > 0 || pipeline.getRejectedCount() > 0
+                || pipeline.getBudgetExceededCount() > 0))
+                exitStatus = 2;
+            else if(exitStatus == 0 && pipeline.getBudgetExceededCount() > 0)
+                exitStatus = 3;
         }
 
-        executor.shutdown();
+        if(reportStats && cache != null)
+            System.err.println(cache);
+        if(reportStats && store != null)
+            System.err.println(store);
 
-        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        if(exitStatus != 0)
+            System.exit(exitStatus);
+    }
 
-        for(var r : results) {
-            System.out.println();
+    //"all", "none" or a comma separated list such as "pointing,box-line,x-wing"
+    static EnumSet<SudokuTechnique> parseTechniques(String list)
+    {
+        EnumSet<SudokuTechnique> techniques = EnumSet.noneOf(SudokuTechnique.class);
+        if(list.equals("all"))
+        {
+            for(SudokuTechnique technique : SudokuTechnique.values())
+                if(technique.isElimination())
+                    techniques.add(technique);
+            return techniques;
+        }
+        if(list.equals("none"))
+            return techniques;
 
-            r.printBoardSimple();
-            
-            System.out.println("#####################");
+        for(String name : list.split(","))
+        {
+            try {
+                SudokuTechnique technique = SudokuTechnique.valueOf(name.trim().toUpperCase().replace('-', '_'));
+                if(!technique.isElimination())
+                    throw new IllegalArgumentException();
+                techniques.add(technique);
+            }
+            catch(IllegalArgumentException e) {
+                System.err.println("Unknown technique: " + name + " (expected pointing, box-line, naked-pair, x-wing,"
+                    + " hidden-pair, naked-triple or hidden-triple)");
+                System.exit(1);
+            }
         }
+        return techniques;
+    }
+
+    static boolean isBinary(Path path) throws IOException
+    {
+        try(InputStream in = Files.newInputStream(path))
+        {
+            byte[] magic = in.readNBytes(SudokuBinaryFormat.HEADER_SIZE);
+            return SudokuBinaryFormat.hasMagic(magic, magic.length);
+        }
+    }
+
+    //peeks at the start of the stream, which must support mark
+    static boolean isBinary(InputStream in) throws IOException
+    {
+        in.mark(SudokuBinaryFormat.HEADER_SIZE);
+        byte[] magic = in.readNBytes(SudokuBinaryFormat.HEADER_SIZE);
+        in.reset();
+        return SudokuBinaryFormat.hasMagic(magic, magic.length);
     }
 
     public static List<char[][]> parseSudokuFile(InputStream in) throws IOException
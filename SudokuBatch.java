@@ -0,0 +1,28 @@
+/**
+ * A group of boards that travels through the pipeline together. Batches are
+ * preallocated by the writer and recycled once written, so parsing and
+ * solving do not allocate new boards per puzzle.
+ */
+class SudokuBatch {
+
+    long sequence;
+    int size;
+    final char[][][] boards;
+
+    //input position of every board, and clue counts and predicted solve time for scheduling
+    final long[] indexes;
+    final int[] clues;
+    long cost;
+
+    //per board: 1 if solved, the solutions found when counting, the rating when rating
+    final long[] results;
+
+    SudokuBatch(int capacity, int boardSize)
+    {
+        this.boards = new char[capacity][boardSize][boardSize];
+        this.indexes = new long[capacity];
+        this.clues = new int[capacity];
+        this.results = new long[capacity];
+        this.size = 0;
+    }
+}
@@ -0,0 +1,361 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * In process benchmark suite for the parsers, the solving engines and the
+ * whole pipeline, so optimizations are measured without JVM startup and
+ * printing mixed in.
+ *
+ * Every benchmark runs warmup iterations, then measured iterations of a
+ * fixed duration, and reports puzzles per second, bytes allocated per
+ * puzzle by the benchmark thread and the collections that ran meanwhile.
+ * Solve benchmarks read the corpora in benchmarks/, stratified by
+ * difficulty.
+ *
+ * With --check-allocation only the benchmarks of engines that must not
+ * allocate once warmed up run, and the exit status is 1 if any of them
+ * allocated.
+ *
+ * There is no JMH module: the tree has no build system, every class is
+ * compiled with javac -d bin, and JMH will not run benchmarks of the
+ * default package. Iterations and the B/puzzle and gc columns follow
+ * JMH's scheme and its gc profiler instead.
+ *
+ * Usage: java -cp bin SudokuBenchmark [--warmup=N] [--iterations=N] [--time=MILLIS] [--check-allocation] [name filter]
+ */
+public class SudokuBenchmark {
+
+    private static final Path CORPORA = Path.of("benchmarks");
+    private static final String[] TIERS = { "easy", "medium", "hardest" };
+
+    //grid per row layout, parsed by both parsers
+    private static final Path PARSE_INPUT = Path.of("sudoku_2.txt");
+    private static final int PIPELINE_REPEAT = 20;
+
+    //every elimination technique, tried before guessing
+    private static final EnumSet<SudokuTechnique> ELIMINATIONS = Sudoku.parseTechniques("all");
+
+    //kernels of the sweep solver, the vector ones only when run with --add-modules jdk.incubator.vector
+    private static final SudokuLanes SCALAR_LANES = SudokuLanes.scalar(SudokuGeometry.of(SudokuGame.SUDOKU_SIZE));
+    private static final SudokuLanes VECTOR_LANES = SudokuLanes.vector(SudokuGeometry.of(SudokuGame.SUDOKU_SIZE));
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    //one invocation, returns the number of puzzles it handled
+    private interface Operation {
+        int run() throws Exception;
+    }
+
+    private static class Benchmark {
+
+        final String name;
+        final Operation operation;
+        //pipeline work happens on other threads, their allocations are not counted
+        final boolean singleThreaded;
+        //checked by --check-allocation, the steady state allocates nothing
+        final boolean allocationFree;
+
+        Benchmark(String name, Operation operation, boolean singleThreaded, boolean allocationFree)
+        {
+            this.name = name;
+            this.operation = operation;
+            this.singleThreaded = singleThreaded;
+            this.allocationFree = allocationFree;
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int warmup = 5;
+        int iterations = 5;
+        long millis = 1000;
+        String filter = "";
+        boolean checkAllocation = false;
+
+        for(String arg : args)
+        {
+            if(arg.startsWith("--warmup="))
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            else if(arg.startsWith("--iterations="))
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            else if(arg.startsWith("--time="))
+                millis = Long.parseLong(arg.substring("--time=".length()));
+            else if(arg.equals("--check-allocation"))
+                checkAllocation = true;
+            else
+                filter = arg;
+        }
+
+        //results go to the real stdout, solved boards of the pipeline go nowhere
+        final PrintStream report = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        List<String> allocating = new ArrayList<>();
+        report.printf("%-28s %14s %12s %10s %8s %8s%n", "benchmark", "puzzles/s", "error", "B/puzzle", "gc", "gc ms");
+        for(Benchmark benchmark : benchmarks())
+        {
+            if(!benchmark.name.contains(filter) || checkAllocation && !benchmark.allocationFree)
+                continue;
+
+            for(int i = 0; i < warmup; i++)
+                runIteration(benchmark, millis);
+
+            double[] throughput = new double[iterations];
+            long puzzles = 0, allocated = 0, gcCount = 0, gcMillis = 0;
+            for(int i = 0; i < iterations; i++)
+            {
+                long[] sample = runIteration(benchmark, millis);
+                throughput[i] = sample[0]*1e9/sample[1];
+                puzzles += sample[0];
+                allocated += sample[2];
+                gcCount += sample[3];
+                gcMillis += sample[4];
+            }
+
+            report.printf("%-28s %14.1f %12.1f %10s %8d %8d%n",
+                benchmark.name, mean(throughput), stddev(throughput),
+                benchmark.singleThreaded ? String.valueOf(allocated/puzzles) : "n/a",
+                gcCount, gcMillis
+            );
+            if(benchmark.allocationFree && allocated/puzzles > 0)
+                allocating.add(benchmark.name);
+        }
+
+        if(checkAllocation)
+        {
+            if(!allocating.isEmpty())
+            {
+                report.println("Allocation check failed: " + String.join(", ", allocating));
+                System.exit(1);
+            }
+            report.println("Allocation check passed");
+        }
+    }
+
+    //returns puzzles, nanoseconds, bytes allocated, collections and collection millis
+    private static long[] runIteration(Benchmark benchmark, long millis) throws Exception
+    {
+        final long gcCount = gcCount(), gcMillis = gcMillis();
+        final long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        final long start = System.nanoTime();
+        final long deadline = start + millis*1_000_000;
+
+        long puzzles = 0;
+        long now;
+        do {
+            puzzles += benchmark.operation.run();
+        } while((now = System.nanoTime()) < deadline);
+
+        return new long[] {
+            puzzles,
+            now - start,
+            THREADS.getCurrentThreadAllocatedBytes() - allocated,
+            gcCount() - gcCount,
+            gcMillis() - gcMillis
+        };
+    }
+
+    private static List<Benchmark> benchmarks() throws IOException
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+
+        final byte[] parseInput = Files.readAllBytes(PARSE_INPUT);
+        final char[][] parseBoard = new char[SudokuGame.SUDOKU_SIZE][SudokuGame.SUDOKU_SIZE];
+
+        benchmarks.add(new Benchmark("parse.parseSudokuBoard", () -> {
+            int puzzles = 0;
+            var reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(parseInput)));
+            while(SudokuGame.parseSudokuBoard(reader) != null)
+                puzzles++;
+            return puzzles;
+        }, true, false));
+
+        benchmarks.add(new Benchmark("parse.SudokuParser", () -> {
+            int puzzles = 0;
+            try(var parser = SudokuParser.open(new ByteArrayInputStream(parseInput)))
+            {
+                while(parser.next(parseBoard))
+                    puzzles++;
+            }
+            return puzzles;
+        }, true, false));
+
+        //parsing with the pipeline's pre-validation of every board
+        final SudokuValidator validator = new SudokuValidator(SudokuGame.SUDOKU_SIZE);
+        benchmarks.add(new Benchmark("parse.validate", () -> {
+            int puzzles = 0;
+            try(var parser = SudokuParser.open(new ByteArrayInputStream(parseInput)))
+            {
+                while(parser.next(parseBoard))
+                    if(validator.validate(parseBoard, puzzles++, parser.getLine()) != null)
+                        throw new IllegalStateException("Benchmark input rejected: " + PARSE_INPUT);
+            }
+            return puzzles;
+        }, true, false));
+
+        for(String tier : TIERS)
+        {
+            List<char[][]> corpus = load(CORPORA.resolve(tier + ".txt"), SudokuGame.SUDOKU_SIZE);
+            benchmarks.add(solveBenchmark("solve.propagation." + tier, corpus, () -> new SudokuGame(false)));
+            benchmarks.add(solveBenchmark("solve.techniques." + tier, corpus, () -> {
+                var game = new SudokuGame(false);
+                game.setEliminations(ELIMINATIONS);
+                return game;
+            }));
+            benchmarks.add(solveBenchmark("solve.dlx." + tier, corpus, DancingLinksSolver::new));
+            benchmarks.add(lockstepBenchmark("solve.lockstep." + tier, corpus));
+            benchmarks.add(solveBenchmark("solve.sweep.scalar." + tier, corpus, () -> new SudokuSweepSolver(SCALAR_LANES)));
+            if(VECTOR_LANES != null)
+                benchmarks.add(solveBenchmark("solve.sweep.vector." + tier, corpus, () -> new SudokuSweepSolver(VECTOR_LANES)));
+            //every puzzle is a cache hit after the first pass, building its key allocates
+            benchmarks.add(solveBenchmark("solve.cached." + tier, corpus,
+                () -> new CachingSolver(new SudokuGame(false), new SudokuSolutionCache(1024), SudokuGame.SUDOKU_SIZE), false));
+        }
+
+        List<char[][]> large = load(Path.of("sudoku_16.txt"), 16);
+        benchmarks.add(solveBenchmark("solve.propagation.16x16", large, () -> new SudokuGame(16, false)));
+        benchmarks.add(solveBenchmark("solve.dlx.16x16", large, () -> new DancingLinksSolver(16)));
+        benchmarks.add(solveBenchmark("solve.sweep.scalar.16x16", large,
+            () -> new SudokuSweepSolver(SudokuLanes.scalar(SudokuGeometry.of(16)))));
+        if(VECTOR_LANES != null)
+            benchmarks.add(solveBenchmark("solve.sweep.vector.16x16", large,
+                () -> new SudokuSweepSolver(SudokuLanes.vector(SudokuGeometry.of(16)))));
+
+        //every tier, repeated so a run spans many batches
+        var mixed = new ByteArrayOutputStream();
+        for(int i = 0; i < PIPELINE_REPEAT; i++)
+            for(String tier : TIERS)
+                mixed.write(Files.readAllBytes(CORPORA.resolve(tier + ".txt")));
+        final byte[] pipelineInput = mixed.toByteArray();
+        final int pipelinePuzzles = PIPELINE_REPEAT*countPuzzles();
+        final int threads = Runtime.getRuntime().availableProcessors();
+
+        benchmarks.add(new Benchmark("pipeline.mixed", () -> {
+            try(var parser = SudokuParser.open(new ByteArrayInputStream(pipelineInput)))
+            {
+                var writer = new SudokuResultWriter(SudokuTextOutput.grid(System.out, SudokuGame.SUDOKU_SIZE), true, SudokuResultWriter.DEFAULT_WINDOW, SudokuPipeline.MAX_GAMES_PER_BATCH, SudokuGame.SUDOKU_SIZE);
+                new SudokuPipeline(threads, () -> new SudokuGame(false), false, writer).run(parser);
+            }
+            return pipelinePuzzles;
+        }, false, false));
+
+        return benchmarks;
+    }
+
+    //solves copies of the corpus boards with one reused solver
+    private static Benchmark solveBenchmark(String name, List<char[][]> corpus, Supplier<SudokuSolver> factory)
+    {
+        return solveBenchmark(name, corpus, factory, true);
+    }
+
+    private static Benchmark solveBenchmark(String name, List<char[][]> corpus, Supplier<SudokuSolver> factory, boolean allocationFree)
+    {
+        final SudokuSolver solver = factory.get();
+        final int size = corpus.get(0).length;
+        final char[][] board = new char[size][size];
+
+        return new Benchmark(name, () -> {
+            for(char[][] puzzle : corpus)
+            {
+                for(int r = 0; r < size; r++)
+                    System.arraycopy(puzzle[r], 0, board[r], 0, size);
+                if(!solver.solve(board))
+                    throw new IllegalStateException(name + ": unsolved puzzle");
+            }
+            return corpus.size();
+        }, true, allocationFree);
+    }
+
+    private static int countPuzzles() throws IOException
+    {
+        int puzzles = 0;
+        for(String tier : TIERS)
+            puzzles += load(CORPORA.resolve(tier + ".txt"), SudokuGame.SUDOKU_SIZE).size();
+        return puzzles;
+    }
+
+    //the corpus in pipeline sized batches, every batch solved in lockstep
+    private static Benchmark lockstepBenchmark(String name, List<char[][]> corpus)
+    {
+        final int size = corpus.get(0).length;
+        final var solver = new SudokuLockstepSolver(size);
+        final var batch = new SudokuBatch(SudokuPipeline.MAX_GAMES_PER_BATCH, size);
+
+        return new Benchmark(name, () -> {
+            for(int first = 0; first < corpus.size(); first += batch.boards.length)
+            {
+                batch.size = Math.min(batch.boards.length, corpus.size() - first);
+                for(int i = 0; i < batch.size; i++)
+                    for(int r = 0; r < size; r++)
+                        System.arraycopy(corpus.get(first + i)[r], 0, batch.boards[i][r], 0, size);
+
+                solver.solveAll(batch.boards, batch.size, batch.results);
+                for(int i = 0; i < batch.size; i++)
+                    if(batch.results[i] == 0)
+                        throw new IllegalStateException(name + ": unsolved puzzle");
+            }
+            return corpus.size();
+        }, true, true);
+    }
+
+    private static List<char[][]> load(Path path, int size) throws IOException
+    {
+        List<char[][]> boards = new ArrayList<>();
+        try(var parser = SudokuParser.open(path, size))
+        {
+            char[][] board;
+            while((board = parser.next()) != null)
+                boards.add(board);
+        }
+        return boards;
+    }
+
+    private static long gcCount()
+    {
+        long count = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+
+    private static long gcMillis()
+    {
+        long millis = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            millis += Math.max(0, gc.getCollectionTime());
+        return millis;
+    }
+
+    private static double mean(double[] values)
+    {
+        double sum = 0;
+        for(double v : values)
+            sum += v;
+        return sum/values.length;
+    }
+
+    private static double stddev(double[] values)
+    {
+        if(values.length < 2) return 0;
+
+        final double mean = mean(values);
+        double sum = 0;
+        for(double v : values)
+            sum += (v - mean)*(v - mean);
+        return Math.sqrt(sum/(values.length - 1));
+    }
+}
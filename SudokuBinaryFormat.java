@@ -0,0 +1,115 @@
+import java.io.IOException;
+
+/**
+ * Packed binary puzzle format: an 8 byte header (magic "SDKB", version,
+ * box size, bits per cell, one reserved byte) followed by one fixed size
+ * record per board, cells in row order. A cell holds 0 when free or its
+ * number + 1: in 4 bits, low nibble first, for boards up to 9x9, and in a
+ * byte for larger ones. A 9x9 board takes 41 bytes.
+ *
+ * Board n starts at HEADER_SIZE + n*recordSize, so files can be read at
+ * random and split between workers without scanning them.
+ */
+final class SudokuBinaryFormat {
+
+    static final int HEADER_SIZE = 8;
+
+    private static final byte[] MAGIC = { 'S', 'D', 'K', 'B' };
+    private static final int VERSION = 1;
+
+    private SudokuBinaryFormat() {}
+
+    static int bitsPerCell(int size)
+    {
+        return size < 16 ? 4 : 8;
+    }
+
+    static int recordSize(int size)
+    {
+        final int nCells = size*size;
+        return bitsPerCell(size) == 4 ? (nCells + 1)/2 : nCells;
+    }
+
+    static byte[] header(int size)
+    {
+        final SudokuGeometry geometry = SudokuGeometry.of(size);
+        return new byte[] {
+            MAGIC[0], MAGIC[1], MAGIC[2], MAGIC[3],
+            (byte) VERSION, (byte) geometry.boxSize, (byte) bitsPerCell(size), 0
+        };
+    }
+
+    //whether the bytes read so far start like a binary file
+    static boolean hasMagic(byte[] bytes, int length)
+    {
+        if(length < MAGIC.length)
+            return false;
+        for(int i = 0; i < MAGIC.length; i++)
+            if(bytes[i] != MAGIC[i])
+                return false;
+        return true;
+    }
+
+    //validates a header and returns the board size it declares
+    static int readHeader(byte[] header) throws IOException
+    {
+        if(!hasMagic(header, header.length) || header.length < HEADER_SIZE)
+            throw new IOException("Not a binary puzzle file");
+        if(header[4] != VERSION)
+            throw new IOException("Unsupported binary puzzle file version: " + header[4]);
+
+        final int boxSize = header[5];
+        if(boxSize < SudokuGeometry.MIN_BOX_SIZE || boxSize > SudokuGeometry.MAX_BOX_SIZE)
+            throw new IOException("Unsupported box size: " + boxSize);
+
+        final int size = boxSize*boxSize;
+        if(header[6] != bitsPerCell(size))
+            throw new IOException("Corrupted binary puzzle file header");
+
+        return size;
+    }
+
+    static void encode(char[][] board, SudokuGeometry geometry, byte[] record)
+    {
+        final int size = geometry.size;
+        if(bitsPerCell(size) == 8)
+        {
+            for(int i = 0; i < geometry.nCells; i++)
+                record[i] = (byte) (geometry.toNumber(board[i / size][i % size]) + 1);
+            return;
+        }
+
+        for(int i = 0; i < geometry.nCells; i += 2)
+        {
+            int packed = geometry.toNumber(board[i / size][i % size]) + 1;
+            if(i + 1 < geometry.nCells)
+                packed |= (geometry.toNumber(board[(i + 1) / size][(i + 1) % size]) + 1) << 4;
+            record[i/2] = (byte) packed;
+        }
+    }
+
+    //returns the first cell holding a value beyond the board size, left free, or -1 for a sound record
+    static int decode(byte[] record, int offset, SudokuGeometry geometry, char[][] board)
+    {
+        final int size = geometry.size;
+        final boolean packed = bitsPerCell(size) == 4;
+
+        int corrupted = -1;
+        for(int i = 0; i < geometry.nCells; i++)
+        {
+            final int b = packed ? record[offset + i/2] >>> ((i & 1)*4) : record[offset + i];
+            final int value = b & (packed ? 0xf : 0xff);
+            if(value > size && corrupted < 0)
+                corrupted = i;
+
+            board[i / size][i % size] = value == 0 || value > size ? '.' : geometry.toSymbol(value - 1);
+        }
+        return corrupted;
+    }
+
+    //cells held by the first bytes of a record
+    static int cellsIn(int bytes, int size)
+    {
+        return Math.min(size*size, bitsPerCell(size) == 4 ? 2*bytes : bytes);
+    }
+}
@@ -0,0 +1,34 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Boards as records of the {@link SudokuBinaryFormat}. The header is
+ * written up front, so even an empty run leaves a valid file.
+ */
+class SudokuBinaryOutput implements SudokuOutput {
+
+    private final OutputStream out;
+    private final SudokuGeometry geometry;
+    private final byte[] record;
+
+    public SudokuBinaryOutput(OutputStream out, int size) throws IOException
+    {
+        this.out = out;
+        this.geometry = SudokuGeometry.of(size);
+        this.record = new byte[SudokuBinaryFormat.recordSize(size)];
+        out.write(SudokuBinaryFormat.header(size));
+    }
+
+    @Override
+    public void write(char[][] board, long result) throws IOException
+    {
+        SudokuBinaryFormat.encode(board, geometry, record);
+        out.write(record);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+}
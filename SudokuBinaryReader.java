@@ -0,0 +1,220 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads boards from a {@link SudokuBinaryFormat} file or stream. Files can
+ * also be read at random, and opened on a range of records so workers can
+ * split one file between them.
+ *
+ * Read in sequence, a record cut short by the end of input or holding a
+ * value beyond the board size is returned with its bad cells free and
+ * reported by {@link #checkShape}, as the text parser reports malformed
+ * puzzles. Reading at random throws on a corrupted record instead.
+ */
+class SudokuBinaryReader implements SudokuReader {
+
+    private static final int BUFFER_RECORDS = 1024;
+
+    private final FileChannel file;
+    private final InputStream stream;
+
+    private final int size;
+    private final SudokuGeometry geometry;
+    private final int recordSize;
+
+    //records of the file in range, and the next one to read
+    private final long count;
+    private final long end;
+    private long next;
+    //bytes of the file after its last whole record, until they are read as a truncated record
+    private int tailBytes;
+
+    //file reads go through a buffer of whole records, stream reads one record at a time
+    private final ByteBuffer buffer;
+    private long bufferFirst = 0;
+    private int bufferRecords = 0;
+    private final byte[] record;
+
+    //what was wrong with the last record read: cells it held before the input ended, its first corrupted cell, or -1
+    private int truncatedCells = -1;
+    private int corruptedCell = -1;
+
+    private SudokuBinaryReader(FileChannel file, long from, long count) throws IOException
+    {
+        this.file = file;
+        this.stream = null;
+        this.size = readHeader(file);
+        this.geometry = SudokuGeometry.of(size);
+        this.recordSize = SudokuBinaryFormat.recordSize(size);
+        this.buffer = ByteBuffer.allocate(BUFFER_RECORDS*recordSize);
+        this.record = null;
+
+        this.count = (file.size() - SudokuBinaryFormat.HEADER_SIZE)/recordSize;
+        if(from < 0 || from > this.count)
+            throw new IOException("Record " + from + " out of range, the file has " + this.count);
+        this.next = from;
+        this.end = count < 0 ? this.count : Math.min(this.count, from + count);
+        this.tailBytes = end == this.count ? (int) ((file.size() - SudokuBinaryFormat.HEADER_SIZE)%recordSize) : 0;
+    }
+
+    private SudokuBinaryReader(InputStream in) throws IOException
+    {
+        this.file = null;
+        this.stream = in;
+        this.size = SudokuBinaryFormat.readHeader(in.readNBytes(SudokuBinaryFormat.HEADER_SIZE));
+        this.geometry = SudokuGeometry.of(size);
+        this.recordSize = SudokuBinaryFormat.recordSize(size);
+        this.buffer = null;
+        this.record = new byte[recordSize];
+
+        this.count = -1;
+        this.end = Long.MAX_VALUE;
+        this.next = 0;
+        this.tailBytes = 0;
+    }
+
+    public static SudokuBinaryReader open(Path path) throws IOException
+    {
+        return open(path, 0, -1);
+    }
+
+    //count records from the record at index from on, or all of them when count is negative
+    public static SudokuBinaryReader open(Path path, long from, long count) throws IOException
+    {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new SudokuBinaryReader(file, from, count);
+        }
+        catch(IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public static SudokuBinaryReader open(InputStream in) throws IOException
+    {
+        return new SudokuBinaryReader(in);
+    }
+
+    private static int readHeader(FileChannel file) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(SudokuBinaryFormat.HEADER_SIZE);
+        while(header.hasRemaining() && file.read(header, header.position()) > 0);
+        return SudokuBinaryFormat.readHeader(header.array());
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    //number of records in the file, -1 for streams
+    public long count()
+    {
+        return count;
+    }
+
+    /**
+     * Reads record index of the file into board, without moving the
+     * sequential position. Returns false past the last record.
+     */
+    public boolean read(long index, char[][] board) throws IOException
+    {
+        if(file == null)
+            throw new UnsupportedOperationException("Random access needs a file");
+        if(index < 0 || index >= count)
+            return false;
+
+        if(decodeBuffered(index, board) >= 0)
+            throw new IOException("Corrupted binary puzzle record " + index);
+        return true;
+    }
+
+    private int decodeBuffered(long index, char[][] board) throws IOException
+    {
+        if(index < bufferFirst || index >= bufferFirst + bufferRecords)
+            fillBuffer(index);
+
+        return SudokuBinaryFormat.decode(buffer.array(), (int) (index - bufferFirst)*recordSize, geometry, board);
+    }
+
+    @Override
+    public boolean next(char[][] board) throws IOException
+    {
+        truncatedCells = -1;
+        corruptedCell = -1;
+
+        if(file != null)
+        {
+            if(next < end)
+            {
+                corruptedCell = decodeBuffered(next++, board);
+                return true;
+            }
+            if(tailBytes == 0)
+                return false;
+
+            //the cut record is not buffered, its board is left free
+            truncatedCells = SudokuBinaryFormat.cellsIn(tailBytes, size);
+            tailBytes = 0;
+            for(char[] row : board)
+                Arrays.fill(row, '.');
+            return true;
+        }
+
+        final int read = stream.readNBytes(record, 0, recordSize);
+        if(read == 0)
+            return false;
+        if(read < recordSize)
+        {
+            //the cells after the end of input are left free
+            truncatedCells = SudokuBinaryFormat.cellsIn(read, size);
+            Arrays.fill(record, read, recordSize, (byte) 0);
+            SudokuBinaryFormat.decode(record, 0, geometry, board);
+            return true;
+        }
+
+        corruptedCell = SudokuBinaryFormat.decode(record, 0, geometry, board);
+        next++;
+        return true;
+    }
+
+    @Override
+    public SudokuReject checkShape(long index)
+    {
+        if(truncatedCells >= 0)
+            return new SudokuReject(index, 0, SudokuReject.Reason.SHAPE, truncatedCells/size, -1, ' ');
+        if(corruptedCell >= 0)
+            return new SudokuReject(index, 0, SudokuReject.Reason.CORRUPTED, corruptedCell/size, corruptedCell%size, ' ');
+        return null;
+    }
+
+    private void fillBuffer(long first) throws IOException
+    {
+        final int records = (int) Math.min(BUFFER_RECORDS, count - first);
+        final long position = SudokuBinaryFormat.HEADER_SIZE + first*recordSize;
+
+        buffer.clear();
+        buffer.limit(records*recordSize);
+        while(buffer.hasRemaining())
+            if(file.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Truncated binary puzzle file");
+
+        bufferFirst = first;
+        bufferRecords = records;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if(file != null)
+            file.close();
+        else
+            stream.close();
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * Candidate grid seen by the {@link SudokuTechnique} eliminations: the
+ * possible numbers of every free cell, as a bit mask per cell. Solved cells
+ * have no candidates, and their numbers are already removed from the
+ * candidates of their peers.
+ */
+interface SudokuCandidates {
+
+    SudokuGeometry getGeometry();
+
+    //possible numbers of a free cell, 0 once the cell is solved
+    long getCandidates(int cell);
+
+    //removes numbers from the candidates of a free cell
+    void eliminate(int cell, long numbers);
+}
@@ -0,0 +1,429 @@
+import java.util.Arrays;
+
+/**
+ * Canonical form of a board under the validity preserving symmetries:
+ * transposition, band and stack permutations, row permutations within a
+ * band, column permutations within a stack, and relabeling of numbers.
+ *
+ * Rows, columns, numbers, bands and stacks get keys from invariants of the
+ * clues, refined a few rounds (a row's key mixes in the keys of the
+ * columns, numbers and stacks of its clues, and so on), so the keys do not
+ * depend on the labels or the order of the input. Lines are ordered by key;
+ * lines left tied are tried in every order, up to MAX_ORDERINGS, numbers
+ * are relabeled by first appearance and the lexicographically smallest
+ * result of both orientations is the form.
+ *
+ * Past MAX_ORDERINGS ties keep their input order, so some permuted variants
+ * of very symmetric puzzles get different forms. That costs a cache miss,
+ * never a wrong answer: equal forms always describe boards that are the
+ * same up to the recorded transform.
+ *
+ * An instance holds the transform of the last board it saw and is meant to
+ * be reused by one thread.
+ */
+class SudokuCanonicalForm {
+
+    private static final int REFINEMENTS = 3;
+    private static final int MAX_ORDERINGS = 64;
+
+    private final SudokuGeometry geometry;
+    private final int size;
+    private final int boxSize;
+    private final int nCells;
+
+    //number of every cell of the current board, FREE_CELL if empty
+    private final int[] numbers;
+
+    //per orientation: original cell of each canonical cell, the form itself, and the labels
+    private final int[][] cellOf;
+    private final char[][] form;
+    private final int[][] labelOf;
+    private final int[][] numberOfLabel;
+    private final int[] labels = new int[2];
+    private int best;
+
+    //the ordering being tried
+    private final int[] candidateCells;
+    private final char[] candidateForm;
+    private final int[] candidateLabelOf;
+    private final int[] candidateNumberOfLabel;
+    private int candidateLabels;
+
+    //invariant keys, and the next round of them
+    private long[] rowKey, nextRowKey;
+    private long[] columnKey, nextColumnKey;
+    private long[] numberKey, nextNumberKey;
+    private long[] bandKey, nextBandKey;
+    private long[] stackKey, nextStackKey;
+
+    //bands and stacks by key, and the lines of each by key
+    private final int[] bandOrder;
+    private final int[] stackOrder;
+    private final int[][] bandRows;
+    private final int[][] stackColumns;
+    private final int[] rowOrder;
+    private final int[] columnOrder;
+
+    //runs of tied entries, permuted in place to try every ordering
+    private final int[][] runArray;
+    private final int[] runFrom;
+    private final int[] runTo;
+    private int runs;
+
+    SudokuCanonicalForm(int size)
+    {
+        this.geometry = SudokuGeometry.of(size);
+        this.size = size;
+        this.boxSize = geometry.boxSize;
+        this.nCells = geometry.nCells;
+
+        numbers = new int[nCells];
+        cellOf = new int[2][nCells];
+        form = new char[2][nCells];
+        labelOf = new int[2][size];
+        numberOfLabel = new int[2][size];
+
+        candidateCells = new int[nCells];
+        candidateForm = new char[nCells];
+        candidateLabelOf = new int[size];
+        candidateNumberOfLabel = new int[size];
+
+        rowKey = new long[size];
+        nextRowKey = new long[size];
+        columnKey = new long[size];
+        nextColumnKey = new long[size];
+        numberKey = new long[size];
+        nextNumberKey = new long[size];
+        bandKey = new long[boxSize];
+        nextBandKey = new long[boxSize];
+        stackKey = new long[boxSize];
+        nextStackKey = new long[boxSize];
+
+        bandOrder = new int[boxSize];
+        stackOrder = new int[boxSize];
+        bandRows = new int[boxSize][boxSize];
+        stackColumns = new int[boxSize][boxSize];
+        rowOrder = new int[size];
+        columnOrder = new int[size];
+
+        final int maxRuns = 2*(boxSize + 1)*boxSize;
+        runArray = new int[maxRuns][];
+        runFrom = new int[maxRuns];
+        runTo = new int[maxRuns];
+    }
+
+    /**
+     * Computes the canonical form of the board's clues.
+     * Returns false when the board does not have the size of this instance.
+     */
+    boolean compute(char[][] board)
+    {
+        if(board.length != size)
+            return false;
+
+        for(int r = 0; r < size; r++)
+        {
+            if(board[r].length != size)
+                return false;
+            for(int c = 0; c < size; c++)
+                numbers[r*size + c] = geometry.toNumber(board[r][c]);
+        }
+
+        order(0, false);
+        order(1, true);
+        best = Arrays.compare(form[0], form[1]) <= 0 ? 0 : 1;
+
+        return true;
+    }
+
+    //the canonical form of the last computed board, as a map key
+    String key()
+    {
+        return new String(form[best]);
+    }
+
+    /**
+     * The solution of the last computed board, in canonical cell order and
+     * labels. Numbers missing from the clues get the next labels by first
+     * appearance.
+     */
+    char[] canonicalSolution(char[][] board)
+    {
+        final int[] cells = cellOf[best];
+        final int[] toLabel = labelOf[best].clone();
+        int nextLabel = labels[best];
+
+        char[] solution = new char[nCells];
+        for(int i = 0; i < nCells; i++)
+        {
+            final int n = geometry.toNumber(board[cells[i] / size][cells[i] % size]);
+            assert n != SudokuCell.FREE_CELL;
+            if(toLabel[n] < 0)
+                toLabel[n] = nextLabel++;
+            solution[i] = geometry.toSymbol(toLabel[n]);
+        }
+
+        return solution;
+    }
+
+    /**
+     * Writes a canonical solution back into the board through the inverse
+     * transform. Labels not used by the clues go to the numbers missing from
+     * the clues in ascending order: nothing constrains those numbers, so any
+     * assignment is a solution.
+     */
+    void applySolution(char[] solution, char[][] board)
+    {
+        final int[] cells = cellOf[best];
+        final int[] toNumber = numberOfLabel[best];
+        final int[] toLabel = labelOf[best];
+        final int clueLabels = labels[best];
+
+        int[] missing = new int[size - clueLabels];
+        for(int n = 0, m = 0; n < size; n++)
+            if(toLabel[n] < 0)
+                missing[m++] = n;
+
+        for(int i = 0; i < nCells; i++)
+        {
+            final int label = geometry.toNumber(solution[i]);
+            final int n = label < clueLabels ? toNumber[label] : missing[label - clueLabels];
+            board[cells[i] / size][cells[i] % size] = geometry.toSymbol(n);
+        }
+    }
+
+    //tries the orderings of one orientation allowed by the keys, keeps the smallest form
+    private void order(int orientation, boolean transposed)
+    {
+        computeKeys(transposed);
+
+        runs = 0;
+        orderLines(bandKey, bandOrder, rowKey, bandRows);
+        orderLines(stackKey, stackOrder, columnKey, stackColumns);
+
+        long orderings = 1;
+        for(int i = 0; i < runs && orderings <= MAX_ORDERINGS; i++)
+            for(int k = 2; k <= runTo[i] - runFrom[i]; k++)
+                orderings *= k;
+        if(orderings > MAX_ORDERINGS)
+            runs = 0;
+
+        boolean first = true;
+        do {
+            buildCandidate(transposed);
+            if(first || Arrays.compare(candidateForm, form[orientation]) < 0)
+            {
+                System.arraycopy(candidateCells, 0, cellOf[orientation], 0, nCells);
+                System.arraycopy(candidateForm, 0, form[orientation], 0, nCells);
+                System.arraycopy(candidateLabelOf, 0, labelOf[orientation], 0, size);
+                System.arraycopy(candidateNumberOfLabel, 0, numberOfLabel[orientation], 0, size);
+                labels[orientation] = candidateLabels;
+            }
+            first = false;
+        } while(nextOrdering());
+    }
+
+    private void computeKeys(boolean transposed)
+    {
+        Arrays.fill(rowKey, 0);
+        Arrays.fill(columnKey, 0);
+        Arrays.fill(numberKey, 0);
+        Arrays.fill(bandKey, 0);
+        Arrays.fill(stackKey, 0);
+        for(int r = 0; r < size; r++)
+            for(int c = 0; c < size; c++)
+            {
+                final int n = numberAt(r, c, transposed);
+                if(n == SudokuCell.FREE_CELL) continue;
+
+                rowKey[r]++;
+                columnKey[c]++;
+                numberKey[n]++;
+                bandKey[r / boxSize]++;
+                stackKey[c / boxSize]++;
+            }
+
+        for(int round = 0; round < REFINEMENTS; round++)
+        {
+            for(int i = 0; i < size; i++)
+            {
+                nextRowKey[i] = rowKey[i]*0x9E3779B97F4A7C15L + bandKey[i / boxSize];
+                nextColumnKey[i] = columnKey[i]*0x9E3779B97F4A7C15L + stackKey[i / boxSize];
+                nextNumberKey[i] = numberKey[i]*0x9E3779B97F4A7C15L;
+            }
+            for(int b = 0; b < boxSize; b++)
+            {
+                nextBandKey[b] = bandKey[b]*0x9E3779B97F4A7C15L;
+                nextStackKey[b] = stackKey[b]*0x9E3779B97F4A7C15L;
+            }
+
+            //sums over the clues do not depend on the order they are visited in
+            for(int r = 0; r < size; r++)
+                for(int c = 0; c < size; c++)
+                {
+                    final int n = numberAt(r, c, transposed);
+                    if(n == SudokuCell.FREE_CELL) continue;
+
+                    nextRowKey[r] += mix(columnKey[c] + 31*numberKey[n] + 961*stackKey[c / boxSize]);
+                    nextColumnKey[c] += mix(rowKey[r] + 31*numberKey[n] + 961*bandKey[r / boxSize]);
+                    nextNumberKey[n] += mix(rowKey[r] + 31*columnKey[c]);
+                }
+            for(int i = 0; i < size; i++)
+            {
+                nextBandKey[i / boxSize] += mix(rowKey[i]);
+                nextStackKey[i / boxSize] += mix(columnKey[i]);
+            }
+
+            for(int i = 0; i < size; i++)
+            {
+                nextRowKey[i] = mix(nextRowKey[i]);
+                nextColumnKey[i] = mix(nextColumnKey[i]);
+                nextNumberKey[i] = mix(nextNumberKey[i]);
+            }
+            for(int b = 0; b < boxSize; b++)
+            {
+                nextBandKey[b] = mix(nextBandKey[b]);
+                nextStackKey[b] = mix(nextStackKey[b]);
+            }
+
+            long[] swap;
+            swap = rowKey; rowKey = nextRowKey; nextRowKey = swap;
+            swap = columnKey; columnKey = nextColumnKey; nextColumnKey = swap;
+            swap = numberKey; numberKey = nextNumberKey; nextNumberKey = swap;
+            swap = bandKey; bandKey = nextBandKey; nextBandKey = swap;
+            swap = stackKey; stackKey = nextStackKey; nextStackKey = swap;
+        }
+    }
+
+    //orders the boxes of lines, then the lines inside each box, and records the ties
+    private void orderLines(long[] boxKey, int[] boxOrder, long[] lineKey, int[][] boxLines)
+    {
+        for(int b = 0; b < boxSize; b++)
+        {
+            boxOrder[b] = b;
+            for(int l = 0; l < boxSize; l++)
+                boxLines[b][l] = b*boxSize + l;
+            sortByKey(boxLines[b], lineKey);
+            addTies(boxLines[b], lineKey);
+        }
+        sortByKey(boxOrder, boxKey);
+        addTies(boxOrder, boxKey);
+    }
+
+    //insertion sort of a few indices by descending key, ties stay ascending
+    private static void sortByKey(int[] indices, long[] key)
+    {
+        for(int i = 1; i < indices.length; i++)
+        {
+            final int index = indices[i];
+            int j = i - 1;
+            while(j >= 0 && key[indices[j]] < key[index])
+            {
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            indices[j + 1] = index;
+        }
+    }
+
+    private void addTies(int[] indices, long[] key)
+    {
+        for(int from = 0, to; from < indices.length; from = to)
+        {
+            to = from + 1;
+            while(to < indices.length && key[indices[to]] == key[indices[from]])
+                to++;
+
+            if(to - from > 1)
+            {
+                runArray[runs] = indices;
+                runFrom[runs] = from;
+                runTo[runs] = to;
+                runs++;
+            }
+        }
+    }
+
+    //steps the runs like an odometer, false once every ordering was tried
+    private boolean nextOrdering()
+    {
+        for(int i = 0; i < runs; i++)
+            if(nextPermutation(runArray[i], runFrom[i], runTo[i]))
+                return true;
+        return false;
+    }
+
+    //next permutation of a[from, to) in lexicographic order, wraps to ascending after the last
+    private static boolean nextPermutation(int[] a, int from, int to)
+    {
+        int i = to - 2;
+        while(i >= from && a[i] >= a[i + 1])
+            i--;
+
+        if(i >= from)
+        {
+            int j = to - 1;
+            while(a[j] <= a[i])
+                j--;
+            int swap = a[i]; a[i] = a[j]; a[j] = swap;
+        }
+
+        for(int l = i + 1, r = to - 1; l < r; l++, r--)
+        {
+            int swap = a[l]; a[l] = a[r]; a[r] = swap;
+        }
+
+        return i >= from;
+    }
+
+    private void buildCandidate(boolean transposed)
+    {
+        for(int b = 0; b < boxSize; b++)
+        {
+            System.arraycopy(bandRows[bandOrder[b]], 0, rowOrder, b*boxSize, boxSize);
+            System.arraycopy(stackColumns[stackOrder[b]], 0, columnOrder, b*boxSize, boxSize);
+        }
+
+        Arrays.fill(candidateLabelOf, -1);
+        int nextLabel = 0;
+
+        for(int i = 0; i < nCells; i++)
+        {
+            final int r = rowOrder[i / size];
+            final int c = columnOrder[i % size];
+            final int cell = transposed ? c*size + r : r*size + c;
+            candidateCells[i] = cell;
+
+            final int n = numbers[cell];
+            if(n == SudokuCell.FREE_CELL)
+            {
+                candidateForm[i] = '.';
+                continue;
+            }
+
+            if(candidateLabelOf[n] < 0)
+            {
+                candidateNumberOfLabel[nextLabel] = n;
+                candidateLabelOf[n] = nextLabel++;
+            }
+            candidateForm[i] = geometry.toSymbol(candidateLabelOf[n]);
+        }
+
+        candidateLabels = nextLabel;
+    }
+
+    private int numberAt(int row, int column, boolean transposed)
+    {
+        return transposed ? numbers[column*size + row] : numbers[row*size + column];
+    }
+
+    private static long mix(long x)
+    {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
@@ -2,76 +2,77 @@ public class SudokuCell implements Comparable<SudokuCell> {
 
     public static final int FREE_CELL = -1;
 
-    public final byte row;
-    public final byte column;
-    public final byte region;
-    public boolean oneOccurence;
-    public final boolean isClue;       
+    public final int row;
+    public final int column;
+    public final int region;
+    public final int index;
+    public boolean isClue;
     
-    private final boolean[] possibleNumbers;
-    private byte possibleNumbersCount;
+    private final SudokuGeometry geometry;
+    private long possibleNumbers;
    
-    public SudokuCell(byte row, byte column, boolean isClue)
+    public SudokuCell(SudokuGeometry geometry, int index, boolean isClue)
     {
-        this.row = row;
-        this.column = column;
+        this.geometry = geometry;
+        this.row = geometry.rowOf[index];
+        this.column = geometry.columnOf[index];
+        this.region = geometry.regionOf[index];
+        this.index = index;
         this.isClue = isClue;
-        this.oneOccurence = false;
-        this.region = (byte) ((row/3)*3 + (column/3)%3);
-        assert region >= 0 && region < SudokuGame.SUDOKU_SIZE; 
+        assert region >= 0 && region < geometry.size; 
 
-        this.possibleNumbers = new boolean[SudokuGame.SUDOKU_SIZE];
-        this.possibleNumbersCount = 0;
+        this.possibleNumbers = 0;
+    }
+
+    public void reset(boolean isClue)
+    {
+        this.isClue = isClue;
+        this.possibleNumbers = 0;
     }
 
     public boolean isNumberPossible(int number)
     {
-        return possibleNumbers[number];
+        return (possibleNumbers & (1L << number)) != 0;
     }
-    
-    private boolean possibleNumbersSanityCheck()
+
+    public long getPossibleNumbers()
     {
-        assert possibleNumbersCount >= 0 && possibleNumbersCount <= SudokuGame.SUDOKU_SIZE;
-
-        // if(leetcodeJudging) return true;
-        // int p = IntStream.range(0, SudokuGame.SUDOKU_SIZE)
-        //     .reduce(0, (a, c) -> c + (possibleNumbers[a] ? 1 : 0));
-        int p = 0;
-        for (int i = 0; i < SudokuGame.SUDOKU_SIZE; i++)
-            p += possibleNumbers[i] ? 1 : 0;
-        return possibleNumbersCount == p;
+        return possibleNumbers;
     }
 
-    public void markNumberAsPossible(int number)
+    public void setPossibleNumbers(long possibleNumbers)
     {
         assert !isClue;
-        boolean alreadyPossible = possibleNumbers[number];
-        if(alreadyPossible) return;
+        assert (possibleNumbers & ~geometry.allNumbers) == 0;
+        this.possibleNumbers = possibleNumbers;
+    }
 
-        possibleNumbers[number] = true;
-        possibleNumbersCount++;
-        assert possibleNumbersSanityCheck();
+    public void markNumberAsPossible(int number)
+    {
+        assert !isClue;
+        possibleNumbers |= 1L << number;
     }
 
     public void markNumberAsNotPossible(int number)
     {
         assert !isClue;
-        boolean alreadyNotPossible = !possibleNumbers[number];
-        if(alreadyNotPossible) return;
-
-        possibleNumbers[number] = false;
-        possibleNumbersCount--;
-        assert possibleNumbersSanityCheck();
+        possibleNumbers &= ~(1L << number);
     }
 
     public int getPossibleNumbersCount()
     {
-        return possibleNumbersCount;
+        return Long.bitCount(possibleNumbers);
+    }
+
+    public int getLowestPossibleNumber()
+    {
+        assert possibleNumbers != 0;
+        return Long.numberOfTrailingZeros(possibleNumbers);
     }
 
     public boolean hasAttempt(char[][] board)
     {
-        boolean hasAttempt = getNumber(board) != FREE_CELL && possibleNumbersCount > 0;
+        boolean hasAttempt = getNumber(board) != FREE_CELL && possibleNumbers != 0;
         assert !isClue || !hasAttempt; //Implication: isClue => !hasAttempt;
 
         return hasAttempt; 
@@ -79,7 +80,7 @@ public class SudokuCell implements Comparable<SudokuCell> {
 
     public boolean isSolved(char[][] board)
     {
-        boolean isSolved = (getNumber(board) != FREE_CELL && possibleNumbersCount == 0);
+        boolean isSolved = (getNumber(board) != FREE_CELL && possibleNumbers == 0);
         assert !isClue || isSolved; //Implication: isClue => isSolved
 
         return isSolved;
@@ -95,12 +96,7 @@ public class SudokuCell implements Comparable<SudokuCell> {
 
     public int getNumber(char[][] board)
     {
-        final int n = board[row][column] - '0' - 1;
-
-        if(n < 0 || n >= SudokuGame.SUDOKU_SIZE)
-            return FREE_CELL;
-        else 
-            return n;
+        return geometry.toNumber(board[row][column]);
     }
 
     @Override
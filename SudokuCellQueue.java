@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/**
+ * Free cells bucketed by their number of possible numbers. Each bucket is a
+ * circular doubly linked list threaded through plain int arrays indexed by
+ * cell, so adding, removing and moving a cell never allocates nor scans.
+ */
+class SudokuCellQueue {
+
+    private static final int NONE = -1;
+
+    private final int[] head;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucketOf;
+    private final int[] bucketSize;
+    private int size;
+
+    SudokuCellQueue(int nCells, int maxBucket)
+    {
+        head = new int[maxBucket + 1];
+        bucketSize = new int[maxBucket + 1];
+        next = new int[nCells];
+        prev = new int[nCells];
+        bucketOf = new int[nCells];
+        clear();
+    }
+
+    void clear()
+    {
+        Arrays.fill(head, NONE);
+        Arrays.fill(bucketSize, 0);
+        Arrays.fill(bucketOf, NONE);
+        size = 0;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    int size(int bucket)
+    {
+        return bucketSize[bucket];
+    }
+
+    boolean isEmpty(int bucket)
+    {
+        return head[bucket] == NONE;
+    }
+
+    boolean contains(int cell)
+    {
+        return bucketOf[cell] != NONE;
+    }
+
+    int bucketOf(int cell)
+    {
+        return bucketOf[cell];
+    }
+
+    private void link(int cell, int bucket)
+    {
+        assert !contains(cell);
+
+        int first = head[bucket];
+        if(first == NONE)
+        {
+            next[cell] = cell;
+            prev[cell] = cell;
+        }
+        else
+        {
+            int last = prev[first];
+            next[cell] = first;
+            prev[cell] = last;
+            next[last] = cell;
+            prev[first] = cell;
+        }
+
+        bucketOf[cell] = bucket;
+        bucketSize[bucket]++;
+        size++;
+    }
+
+    void addLast(int cell, int bucket)
+    {
+        link(cell, bucket);
+        if(head[bucket] == NONE)
+            head[bucket] = cell;
+    }
+
+    void addFirst(int cell, int bucket)
+    {
+        link(cell, bucket);
+        head[bucket] = cell;
+    }
+
+    void remove(int cell)
+    {
+        assert contains(cell);
+
+        int bucket = bucketOf[cell];
+        if(next[cell] == cell)
+            head[bucket] = NONE;
+        else
+        {
+            next[prev[cell]] = next[cell];
+            prev[next[cell]] = prev[cell];
+            if(head[bucket] == cell)
+                head[bucket] = next[cell];
+        }
+
+        bucketOf[cell] = NONE;
+        bucketSize[bucket]--;
+        size--;
+    }
+
+    void move(int cell, int bucket)
+    {
+        if(bucketOf[cell] == bucket) return;
+        remove(cell);
+        addLast(cell, bucket);
+    }
+
+    //removes and returns the first cell of the bucket, NONE if it is empty
+    int pollFirst(int bucket)
+    {
+        int cell = head[bucket];
+        if(cell != NONE)
+            remove(cell);
+        return cell;
+    }
+
+    //first cell of the lowest non-empty bucket from minBucket on, NONE if there is none
+    int peekMin(int minBucket)
+    {
+        for(int b = minBucket; b < head.length; b++)
+            if(head[b] != NONE)
+                return head[b];
+        return NONE;
+    }
+}
@@ -0,0 +1,208 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runnable checks of behaviour the sample inputs do not reach, such as a
+ * reader failing partway through a run. Prints every check and exits with
+ * status 1 when one fails.
+ *
+ * Usage: java -cp bin SudokuChecks
+ */
+public class SudokuChecks {
+
+    //a run still going after this is taken to hang
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    //one check, throwing AssertionError or any exception when it fails
+    private interface Check {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        List<String> failed = new ArrayList<>();
+        check("pipeline.readerFailsFirst", () -> readerFailure(0), failed);
+        check("pipeline.readerFailsPartway", () -> readerFailure(100), failed);
+        check("binary.corruptedRecord", SudokuChecks::corruptedRecord, failed);
+        check("binary.truncatedRecord", SudokuChecks::truncatedRecord, failed);
+        check("text.headerLines", SudokuChecks::headerLines, failed);
+        check("text.shortRow", SudokuChecks::shortRow, failed);
+
+        if(!failed.isEmpty())
+        {
+            System.out.println("Failed: " + String.join(", ", failed));
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    private static void check(String name, Check check, List<String> failed)
+    {
+        try {
+            check.run();
+            System.out.println("ok     " + name);
+        }
+        catch(Exception | AssertionError e) {
+            System.out.println("FAILED " + name + ": " + e);
+            failed.add(name);
+        }
+    }
+
+    private static void require(boolean condition, String message)
+    {
+        if(!condition)
+            throw new AssertionError(message);
+    }
+
+    //a reader throwing after that many empty boards: run rethrows its exception instead of waiting for the batch it was filling
+    private static void readerFailure(int boards) throws Exception
+    {
+        final IOException failure = new IOException("reader failure");
+        final SudokuReader reader = new SudokuReader() {
+
+            private int read = 0;
+
+            @Override
+            public boolean next(char[][] board) throws IOException
+            {
+                if(read++ == boards)
+                    throw failure;
+                for(char[] row : board)
+                    Arrays.fill(row, '.');
+                return true;
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+
+        final int size = SudokuGame.SUDOKU_SIZE;
+        final var writer = new SudokuResultWriter(SudokuTextOutput.compact(OutputStream.nullOutputStream(), size), true, 4, 8, size);
+        final var pipeline = new SudokuPipeline(2, SudokuPipeline.Schedule.COST, 8, () -> new SudokuGame(false), false, writer);
+
+        final Throwable[] thrown = new Throwable[1];
+        Thread run = new Thread(() -> {
+            try {
+                pipeline.run(reader);
+            }
+            catch(Throwable t) {
+                thrown[0] = t;
+            }
+        }, "check-pipeline");
+        run.setDaemon(true);
+        run.start();
+        run.join(TIMEOUT_MILLIS);
+
+        require(!run.isAlive(), "run still waiting after " + TIMEOUT_MILLIS + " ms");
+        require(thrown[0] == failure, "run ended with " + thrown[0] + " instead of the reader's exception");
+    }
+
+    //two records of sudoku_ex1.txt's first board
+    private static byte[] binaryRecords() throws IOException
+    {
+        final int size = SudokuGame.SUDOKU_SIZE;
+        char[][] board = new char[size][size];
+        try(var parser = SudokuParser.open(Path.of("sudoku_ex1.txt"), size))
+        {
+            require(parser.next(board), "sudoku_ex1.txt holds no board");
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        var output = new SudokuBinaryOutput(bytes, size);
+        output.write(board, SudokuOutput.NO_RESULT);
+        output.write(board, SudokuOutput.NO_RESULT);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    //a cell value beyond the board size is a reject of its record, the next record still reads
+    private static void corruptedRecord() throws IOException
+    {
+        byte[] records = binaryRecords();
+        records[SudokuBinaryFormat.HEADER_SIZE + 4] |= (byte) 0xf0;
+
+        char[][] board = new char[SudokuGame.SUDOKU_SIZE][SudokuGame.SUDOKU_SIZE];
+        try(var reader = SudokuBinaryReader.open(new ByteArrayInputStream(records)))
+        {
+            require(reader.next(board), "corrupted record not read");
+            SudokuReject reject = reader.checkShape(0);
+            require(reject != null && reject.reason == SudokuReject.Reason.CORRUPTED && reject.row == 1 && reject.column == 0,
+                "corrupted record reported as " + reject);
+
+            require(reader.next(board) && reader.checkShape(1) == null, "record after the corrupted one not read");
+            require(!reader.next(board), "records after the end of input");
+        }
+    }
+
+    //a record cut short by the end of input is a shape reject, then the input ends
+    private static void truncatedRecord() throws IOException
+    {
+        byte[] records = binaryRecords();
+        records = Arrays.copyOf(records, records.length - 10);
+
+        char[][] board = new char[SudokuGame.SUDOKU_SIZE][SudokuGame.SUDOKU_SIZE];
+        try(var reader = SudokuBinaryReader.open(new ByteArrayInputStream(records)))
+        {
+            require(reader.next(board) && reader.checkShape(0) == null, "whole record not read");
+            require(reader.next(board), "truncated record not read");
+            SudokuReject reject = reader.checkShape(1);
+            require(reject != null && reject.reason == SudokuReject.Reason.SHAPE && reject.row == 6 && reject.column == -1,
+                "truncated record reported as " + reject);
+            require(!reader.next(board), "records after the end of input");
+        }
+    }
+
+    //rows of one puzzle in the layout of Project Euler's sudoku.txt, 0 for free cells
+    private static final String GRID_ROWS =
+        "003020600\n900305001\n001806400\n008102900\n700000008\n006708200\n002609500\n800203009\n005010300\n";
+
+    private static SudokuParser parse(String text) throws IOException
+    {
+        return SudokuParser.open(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)), SudokuGame.SUDOKU_SIZE);
+    }
+
+    //"Grid 01" headers before every puzzle are skipped, as parseSudokuBoard skips them
+    private static void headerLines() throws IOException
+    {
+        char[][] board = new char[SudokuGame.SUDOKU_SIZE][SudokuGame.SUDOKU_SIZE];
+        try(var parser = parse("Grid 01\n" + GRID_ROWS + "Grid 02\n" + GRID_ROWS + "Grid 03\n" + GRID_ROWS))
+        {
+            for(int i = 0; i < 3; i++)
+            {
+                require(parser.next(board), "puzzle " + (i + 1) + " not read");
+                require(parser.checkShape(i) == null, "puzzle " + (i + 1) + " rejected: " + parser.checkShape(i));
+                require(parser.getLine() == 10*i + 2, "puzzle " + (i + 1) + " starts on line " + parser.getLine());
+                require(new String(board[8]).equals("005010300"), "puzzle " + (i + 1) + " ends with " + new String(board[8]));
+            }
+            require(!parser.next(board), "puzzles after the end of input");
+        }
+    }
+
+    //a short line after the first row is a malformed row, the next puzzle starts after the puzzle's last line
+    private static void shortRow() throws IOException
+    {
+        final String[] rows = GRID_ROWS.split("\n");
+        rows[2] = "00180";
+
+        char[][] board = new char[SudokuGame.SUDOKU_SIZE][SudokuGame.SUDOKU_SIZE];
+        try(var parser = parse(String.join("\n", rows) + "\nGrid 02\n" + GRID_ROWS))
+        {
+            require(parser.next(board), "malformed puzzle not read");
+            SudokuReject reject = parser.checkShape(0);
+            require(reject != null && reject.reason == SudokuReject.Reason.SHAPE && reject.row == 2 && reject.column == 5,
+                "short row reported as " + reject);
+
+            require(parser.next(board) && parser.checkShape(1) == null, "puzzle after the malformed one not read");
+            require(parser.getLine() == 11, "puzzle after the malformed one starts on line " + parser.getLine());
+        }
+    }
+}
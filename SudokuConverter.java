@@ -0,0 +1,68 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Converts puzzle files between the text layouts and the
+ * {@link SudokuBinaryFormat}: binary input is written as text grids, any
+ * text input as binary records.
+ *
+ *   java SudokuConverter [--size=N] input output
+ */
+public class SudokuConverter {
+
+    public static void main(String[] args) throws IOException
+    {
+        int size = SudokuGame.SUDOKU_SIZE;
+        String input = null;
+        String output = null;
+
+        for(String arg : args)
+        {
+            if(arg.startsWith("--size="))
+                size = Integer.parseInt(arg.substring("--size=".length()));
+            else if(input == null)
+                input = arg;
+            else
+                output = arg;
+        }
+
+        if(input == null || output == null)
+        {
+            System.err.println("Usage: SudokuConverter [--size=N] input output");
+            System.exit(1);
+        }
+        if(!SudokuGeometry.isValidSize(size))
+        {
+            System.err.println("Unsupported size: " + size + " (expected 4, 9, 16, 25 or 36)");
+            System.exit(1);
+        }
+
+        final Path inputPath = Path.of(input);
+        final boolean toText = Sudoku.isBinary(inputPath);
+
+        long boards = 0;
+        try(SudokuReader reader = toText ? SudokuBinaryReader.open(inputPath) : SudokuParser.open(inputPath, size);
+            OutputStream out = new BufferedOutputStream(Files.newOutputStream(Path.of(output)), 1 << 16))
+        {
+            if(toText)
+                size = ((SudokuBinaryReader) reader).getSize();
+
+            SudokuOutput converted = toText
+                ? SudokuTextOutput.grid(out, size)
+                : new SudokuBinaryOutput(out, size);
+
+            char[][] board = new char[size][size];
+            while(reader.next(board))
+            {
+                converted.write(board, SudokuOutput.NO_RESULT);
+                boards++;
+            }
+            converted.flush();
+        }
+
+        System.err.println("Converted " + boards + " boards to " + (toText ? "text" : "binary"));
+    }
+}
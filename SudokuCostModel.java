@@ -0,0 +1,62 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Predicts how long a board takes to solve from its clue count, learning
+ * from the solve times the pipeline reports. Each clue count keeps an
+ * exponentially weighted moving average of its solve times, and counts not
+ * seen yet fall back to the average over every board.
+ *
+ * Solver threads update the averages without locking: a lost update only
+ * makes one estimate a little staler.
+ */
+class SudokuCostModel {
+
+    //weight of a new sample, 1/2^EWMA_SHIFT
+    private static final int EWMA_SHIFT = 3;
+
+    private static final long UNKNOWN = -1;
+
+    private final SudokuGeometry geometry;
+
+    //index nCells + 1 holds the average over every clue count
+    private final AtomicLongArray nanosByClues;
+    private final int all;
+
+    public SudokuCostModel(int size, long initialNanos)
+    {
+        this.geometry = SudokuGeometry.of(size);
+        this.all = geometry.nCells + 1;
+        this.nanosByClues = new AtomicLongArray(geometry.nCells + 2);
+        for(int i = 0; i < all; i++)
+            nanosByClues.setPlain(i, UNKNOWN);
+        nanosByClues.setPlain(all, initialNanos);
+    }
+
+    public int countClues(char[][] board)
+    {
+        int clues = 0;
+        for(char[] row : board)
+            for(char symbol : row)
+                if(geometry.toNumber(symbol) != SudokuCell.FREE_CELL)
+                    clues++;
+        return clues;
+    }
+
+    public long estimate(int clues)
+    {
+        final long nanos = nanosByClues.getOpaque(clues);
+        return nanos != UNKNOWN ? nanos : nanosByClues.getOpaque(all);
+    }
+
+    public void record(int clues, long nanos)
+    {
+        update(clues, nanos);
+        update(all, nanos);
+    }
+
+    private void update(int index, long nanos)
+    {
+        final long average = nanosByClues.getOpaque(index);
+        nanosByClues.setOpaque(index, average == UNKNOWN ? nanos : average + ((nanos - average) >> EWMA_SHIFT));
+    }
+}
@@ -0,0 +1,107 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder events of the propagation solver. Escape analysis cannot
+ * remove events created in the recursive search, so they are only created
+ * once Flight Recorder has started: until then solves allocate nothing.
+ *
+ * Solve events are recorded for every puzzle. Backtrack and propagation
+ * events happen at every search node, so by default only those lasting
+ * over 1 ms are kept; lower the threshold in a .jfc file to see them all:
+ *   java -XX:StartFlightRecording=filename=sudoku.jfr -cp bin Sudoku ...
+ *   jfr print --events sudoku.Solve sudoku.jfr
+ */
+final class SudokuEvents {
+
+    private SudokuEvents() {}
+
+    //false until the first recording starts, events are not created before
+    static boolean isRecording()
+    {
+        return FlightRecorder.isInitialized();
+    }
+
+    @Name("sudoku.Solve")
+    @Label("Sudoku Solve")
+    @Category("Sudoku")
+    @Description("One board solved by a SudokuGame")
+    @StackTrace(false)
+    static class Solve extends Event {
+
+        @Label("Size")
+        int size;
+
+        @Label("Clues")
+        int clues;
+
+        @Label("Solved")
+        boolean solved;
+
+        @Label("Guesses")
+        long guesses;
+
+        @Label("Backtracks")
+        long backtracks;
+
+        @Label("Placements")
+        long placements;
+
+        @Label("Hidden Singles")
+        long hiddenSingles;
+
+        @Label("Max Depth")
+        int maxDepth;
+    }
+
+    @Name("sudoku.Backtrack")
+    @Label("Sudoku Backtrack")
+    @Category("Sudoku")
+    @Description("Search node trying every possible number of one cell")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static class Backtrack extends Event {
+
+        @Label("Depth")
+        int depth;
+
+        @Label("Cell")
+        int cell;
+
+        @Label("Possible Numbers")
+        int possibleNumbers;
+
+        @Label("Numbers Tried")
+        int tried;
+
+        @Label("Solved")
+        boolean solved;
+    }
+
+    @Name("sudoku.Propagation")
+    @Label("Sudoku Propagation")
+    @Category("Sudoku")
+    @Description("Singles placed until the board is solved, stuck or contradictory")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static class Propagation extends Event {
+
+        @Label("Depth")
+        int depth;
+
+        @Label("Placements")
+        long placements;
+
+        @Label("Hidden Singles")
+        long hiddenSingles;
+
+        @Label("Cells Left")
+        int cellsLeft;
+    }
+}
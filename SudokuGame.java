@@ -1,31 +1,36 @@
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
-class SudokuGame {
+class SudokuGame implements SudokuSolver {
 
     
     public static final int SUDOKU_SIZE = 9;
 
-    private static final byte SUDOKU_N_CELLS = SUDOKU_SIZE*SUDOKU_SIZE;
+    //layout of the board size this game solves, 9x9 unless told otherwise
+    private final SudokuGeometry geometry;
+    private final int size;
+    private final int nCells;
+    private final long allNumbers;
 
-    private byte cellsLeft = SUDOKU_N_CELLS;
+    private int cellsLeft;
 
-    private boolean[][] rowsNumbers     = new boolean[SUDOKU_SIZE][SUDOKU_SIZE];
-    private byte[] rowsNumbersCount     = new byte[SUDOKU_SIZE];
+    //bit n set <=> number n is already placed in the unit
+    private final long[] rowsNumbers;
+    private final long[] columnsNumbers;
+    private final long[] regionsNumbers;
 
-    private boolean[][] columnsNumbers  = new boolean[SUDOKU_SIZE][SUDOKU_SIZE];
-    private byte[] columnsNumbersCount  = new byte[SUDOKU_SIZE];
-
-    private boolean[][] regionsNumbers  = new boolean[SUDOKU_SIZE][SUDOKU_SIZE];
-    private byte[] regionsNumbersCount  = new byte[SUDOKU_SIZE];
-
-    static final int QUEUE_PRIORITY_LEVELS = 3;
+    //units with a cell changed since their last hidden single scan, numbered as in SudokuGeometry
+    private final boolean[] dirtyUnits;
 
     private int initialFreeCellsNumber;
 
@@ -35,20 +40,64 @@ class SudokuGame {
 
     static boolean leetcodeJudging = true;
 
-    static boolean useMultithreading = false;
+    private boolean useMultithreading = false;
 
-    private SudokuCell[][] cellPool = new SudokuCell[SUDOKU_SIZE][SUDOKU_SIZE];
+    //parallel search: split the search tree into fork/join tasks up to this depth
+    static final int PARALLEL_SPLIT_DEPTH = 3;
 
+    //eliminations tried, in order, when singles run out and before guessing
+    private SudokuTechnique[] eliminations = NO_ELIMINATIONS;
+    private static final SudokuTechnique[] NO_ELIMINATIONS = {};
+    private final SudokuCandidates candidates = new Candidates();
+    private final SudokuTechnique.Scratch techniqueScratch;
 
-    private Deque<SudokuCell>[] cellPriorityQueue = new Deque[QUEUE_PRIORITY_LEVELS]; 
-    {
-        for(int l = 0; l < QUEUE_PRIORITY_LEVELS; l++)
-            cellPriorityQueue[l] = new LinkedList<>();
-    }
+    //shared by all the games of one parallel search
+    private ParallelSearch parallelSearch = null;
+    private int parallelDepth = 0;
+
+    //the search stops after this many solutions; the first one is kept when looking for more
+    private long solutionLimit = 1;
+    private long solutionsFound = 0;
+    private char[][] firstSolution = null;
+    private char[][] clues = null;
+
+    //indexed by cell index
+    private final SudokuCell[] cellPool;
+
+    //free cells bucketed by their number of possible numbers
+    private final SudokuCellQueue cellPriorityQueue;
+
+    //undo log of the search: a cell index and its previous possible numbers, or PLACEMENT.
+    //possible numbers only shrink along a search path, so a cell is logged at most size + 1 times
+    private static final long PLACEMENT = -1L;
+    private final int[] trailCells;
+    private final long[] trailValues;
+    private int trailSize = 0;
+
+    //counters of the current solve, and how many guesses deep the search is now
+    private final SudokuSearchStats stats = new SudokuSearchStats();
+    private int searchDepth = 0;
+
+    //budget of every solve: guesses (0 for no limit) and time, cut short by a deadline shared by all solves
+    private long maxGuesses = 0;
+    private long maxNanos = 0;
+    private volatile long deadline = NO_DEADLINE;
+
+    //the search reads the clock every CLOCK_INTERVAL guesses, and stops once the solve is over budget or cancelled
+    private static final int CLOCK_INTERVAL = 64;
+    private long searchDeadline = NO_DEADLINE;
+    private volatile boolean cancelled = false;
+    private boolean budgetExceeded = false;
+
+    private static final SudokuException NO_SOLUTION = new SudokuException("Board has no solutions!", false);
+    private static final SudokuException BUDGET_EXCEEDED = new SudokuException("Unsolved: budget exceeded!", false);
 
     private char[][] board;
 
-    public SudokuGame() {}
+    public SudokuGame()
+    {
+        this(SUDOKU_SIZE, false);
+    }
 
 
     public static char[][] parseSudokuBoard(BufferedReader reader) throws IOException
@@ -78,15 +127,152 @@ class SudokuGame {
 
     public SudokuGame(boolean leetcodeJudging, boolean useMultithreading)
     {
+        this(SUDOKU_SIZE, useMultithreading);
         this.leetcodeJudging = leetcodeJudging;
-        this.useMultithreading = useMultithreading;
     }
 
     public SudokuGame(char[][] board)
     {
+        this(board, false);
+    }
+
+    public SudokuGame(boolean useMultithreading)
+    {
+        this(SUDOKU_SIZE, useMultithreading);
+    }
+
+    //a game for size x size boards, reused for every board it solves
+    public SudokuGame(int size, boolean useMultithreading)
+    {
+        this.geometry = SudokuGeometry.of(size);
+        this.size = geometry.size;
+        this.nCells = geometry.nCells;
+        this.allNumbers = geometry.allNumbers;
+        this.cellsLeft = nCells;
+
+        this.rowsNumbers = new long[size];
+        this.columnsNumbers = new long[size];
+        this.regionsNumbers = new long[size];
+        this.dirtyUnits = new boolean[3*size];
+        Arrays.fill(dirtyUnits, true);
+
+        this.cellPool = new SudokuCell[nCells];
+        for(int i = 0; i < nCells; i++)
+            cellPool[i] = new SudokuCell(geometry, i, false);
+
+        this.cellPriorityQueue = new SudokuCellQueue(nCells, size);
+        this.techniqueScratch = new SudokuTechnique.Scratch(size);
+        this.trailCells = new int[nCells*(size + 1)];
+        this.trailValues = new long[nCells*(size + 1)];
+
         this.leetcodeJudging = true;
-        this.useMultithreading = false;
+        this.useMultithreading = useMultithreading;
+    }
+
+    public SudokuGame(char[][] board, boolean useMultithreading)
+    {
+        this(sizeOf(board), useMultithreading);
+        this.board = board;
+    }
+
+    private SudokuGame(char[][] board, ParallelSearch parallelSearch, int parallelDepth)
+    {
+        this(board.length, true);
+        this.board = board;
+        this.parallelSearch = parallelSearch;
+        this.parallelDepth = parallelDepth;
+        this.eliminations = parallelSearch.eliminations;
+        this.maxGuesses = parallelSearch.owner.maxGuesses;
+        this.searchDeadline = parallelSearch.owner.searchDeadline;
+    }
+
+    /**
+     * Enables the elimination techniques tried when no single is left,
+     * before the search guesses. They run from the cheapest on, and the
+     * game goes back to singles after the first one that removes a
+     * candidate.
+     */
+    public void setEliminations(EnumSet<SudokuTechnique> techniques)
+    {
+        for(SudokuTechnique technique : techniques)
+            if(!technique.isElimination())
+                throw new IllegalArgumentException(technique.label() + " is always on");
+        this.eliminations = techniques.toArray(NO_ELIMINATIONS);
+    }
+
+    /**
+     * Limits every solve to maxGuesses guesses and maxNanos nanoseconds,
+     * 0 meaning no limit. A search over budget stops and the solve fails,
+     * leaving the board as for a board without solution.
+     *
+     * With parallel search the guess limit applies to every branch task.
+     */
+    public void setBudget(long maxGuesses, long maxNanos)
+    {
+        assert maxGuesses >= 0 && maxNanos >= 0;
+        this.maxGuesses = maxGuesses;
+        this.maxNanos = maxNanos;
+    }
+
+    //e.g. the end of a whole run, on top of the budget of every solve
+    @Override
+    public void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    //the search stops at its next guess; has no effect on the solves after it
+    @Override
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    @Override
+    public boolean isBudgetExceeded()
+    {
+        return budgetExceeded;
+    }
+
+    //clears the state of the previous solve and loads a new board, so one game can be reused
+    public void reset(char[][] board)
+    {
+        cellsLeft = nCells;
+        Arrays.fill(rowsNumbers, 0);
+        Arrays.fill(columnsNumbers, 0);
+        Arrays.fill(regionsNumbers, 0);
+        Arrays.fill(dirtyUnits, true);
+
+        cellPriorityQueue.clear();
+        trailSize = 0;
+
+        stats.reset();
+        searchDepth = 0;
+
+        initialFreeCellsNumber = 0;
+        boardAnalysed = false;
+        parallelSearch = null;
+        solutionLimit = 1;
+        solutionsFound = 0;
         this.board = board;
+
+        //cleared before the deadline is read, so a deadline set and a cancel sent meanwhile are not both missed
+        cancelled = false;
+        budgetExceeded = false;
+        searchDeadline = deadline;
+        if(maxNanos > 0)
+        {
+            //nanoTime may wrap around, so the earlier deadline is told by their difference
+            final long budgetDeadline = System.nanoTime() + maxNanos;
+            if(searchDeadline == NO_DEADLINE || budgetDeadline - searchDeadline < 0)
+                searchDeadline = budgetDeadline;
+        }
+    }
+
+    //boards of an unsupported size get a 9x9 game, which rejects them as invalid
+    private static int sizeOf(char[][] board)
+    {
+        return board != null && SudokuGeometry.isValidSize(board.length) ? board.length : SUDOKU_SIZE;
     }
 
     public void solveSudoku() {
@@ -96,12 +282,28 @@ class SudokuGame {
 
     public void solveSudoku(char[][] board)
     {
-        this.board = board;
+        solve(board);
+    }
+
+    @Override
+    public boolean solve(char[][] board)
+    {
+        final var event = SudokuEvents.isRecording() ? new SudokuEvents.Solve() : null;
+        if(event != null)
+            event.begin();
+        final long start = System.nanoTime();
+
+        reset(board);
+        boolean solved = false;
 
         try {
             analyseBoard();
 
-            solveBoard();
+            solved = solveBoard();
+            if(solved)
+                return true;
+
+            System.err.println((budgetExceeded ? BUDGET_EXCEEDED : NO_SOLUTION).getMessage());
         } 
         catch(SudokuException se)
         {
@@ -110,10 +312,98 @@ class SudokuGame {
         catch (InterruptedException e) {
             e.printStackTrace();
         }
+        finally {
+            stats.nanos = System.nanoTime() - start;
+            if(event != null)
+            {
+                event.end();
+                if(event.shouldCommit())
+                {
+                    event.size = size;
+                    event.clues = boardAnalysed ? nCells - initialFreeCellsNumber : 0;
+                    event.solved = solved;
+                    event.guesses = stats.guesses;
+                    event.backtracks = stats.backtracks;
+                    event.placements = stats.placements;
+                    event.hiddenSingles = stats.hiddenSingles;
+                    event.maxDepth = stats.maxDepth;
+                    event.commit();
+                }
+            }
+        }
         // backtracking = true;
         // solveBoardBacktracking();
 
-        return;
+        return false;
+    }
+
+    //counters of the last solve, overwritten by the next one
+    public SudokuSearchStats getStats()
+    {
+        return stats;
+    }
+
+    /**
+     * Counts the solutions of the board, stopping at limit: 0 for invalid
+     * boards and boards without solutions, 1 for unique ones, limit when
+     * there are at least limit. The board is left with its first solution,
+     * or with its clues alone when it has none.
+     */
+    public long countSolutions(char[][] board, long limit)
+    {
+        assert limit > 0;
+        final long start = System.nanoTime();
+
+        reset(board);
+        solutionLimit = limit;
+
+        boolean validShape = board.length == size;
+        for(int r = 0; validShape && r < size; r++)
+            validShape = board[r].length == size;
+        if(validShape)
+        {
+            clues = copyBoard(board, clues);
+            if(limit > 1)
+                firstSolution = copyBoard(board, firstSolution);
+        }
+
+        try {
+            analyseBoard();
+            solveBoard();
+        }
+        catch(SudokuException se) {
+            //invalid board, or a contradiction found by the first propagation
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            stats.nanos = System.nanoTime() - start;
+        }
+
+        //the search ends on the last solution it found, or undone to the first propagation
+        if(validShape)
+        {
+            final char[][] result = solutionsFound == 0 ? clues : firstSolution;
+            if(result != null && (solutionsFound == 0 || limit > 1))
+                for(int r = 0; r < size; r++)
+                    System.arraycopy(result[r], 0, board[r], 0, size);
+        }
+
+        return solutionsFound;
+    }
+
+    //counts a solution on the board, true when the search can stop
+    private boolean solutionFound()
+    {
+        assert cellsLeft == 0;
+
+        if(parallelSearch != null)
+            return parallelSearch.solutionFound(board);
+
+        if(++solutionsFound == 1 && solutionLimit > 1)
+            copyBoard(board, firstSolution);
+        return solutionsFound >= solutionLimit;
     }
 
     private boolean solveBoardBacktracking() throws InterruptedException
@@ -127,196 +417,378 @@ class SudokuGame {
         // if(cellsLeft >= 60)
         //     Collections.sort((List) cellPriorityQueue[2]);
 
-        if(cellsLeft >= 60 && useMultithreading)
+        if(useMultithreading && parallelDepth < PARALLEL_SPLIT_DEPTH
+        && (parallelSearch != null || cellsLeft >= nCells/2))
             return solveBoardBacktrackingMultiThread();
         else
-            return solveBoardBacktrackingSingleThread(true);
+            return solveBoardBacktrackingSingleThread();
     }
 
     private char[][] copyBoard(char[][] board)
     {
-        char[][] newBoard = new char[SUDOKU_SIZE][SUDOKU_SIZE];
-        for(int i = 0; i < SUDOKU_SIZE; i++)
-            newBoard[i] = Arrays.copyOf(board[i], SUDOKU_SIZE);
+        char[][] newBoard = new char[size][];
+        for(int i = 0; i < size; i++)
+            newBoard[i] = Arrays.copyOf(board[i], size);
 
         return newBoard;
     }
 
-    private boolean solveBoardBacktrackingMultiThread() throws InterruptedException
+    //copies into target, allocated on first use
+    private char[][] copyBoard(char[][] board, char[][] target)
+    {
+        if(target == null)
+            return copyBoard(board);
+
+        for(int i = 0; i < size; i++)
+            System.arraycopy(board[i], 0, target[i], 0, size);
+        return target;
+    }
+
+    private boolean solveBoardBacktrackingMultiThread()
     {
-        SudokuCell cell = popCellWithMostPossibilities();
+        SudokuCell cell = peekQueue();
         assert cell != null;
         assert cell.getPossibleNumbersCount() > 1;
 
-        int nThreads = cell.getPossibleNumbersCount();
+        final boolean root = parallelSearch == null;
+        if(root)
+            parallelSearch = new ParallelSearch(solutionLimit, eliminations, this);
 
-        List<Thread> threads = new ArrayList<>(nThreads + 1);
-        List<char[][]> threadsBoards = new ArrayList<>(nThreads + 1);
+        List<SearchTask> tasks = new ArrayList<>(cell.getPossibleNumbersCount());
 
-        boolean[] threadsResults = new boolean[nThreads]; 
-
-        int currentThread = 0;
-        for(int n = 0; n < SUDOKU_SIZE; n++)
+        for(long candidates = cell.getPossibleNumbers(); candidates != 0; candidates &= candidates - 1)
         {
-            if(!cell.isNumberPossible(n)) continue;
+            final int n = Long.numberOfTrailingZeros(candidates);
 
-            char[][] threadBoard = copyBoard(board);
+            char[][] taskBoard = copyBoard(board);
+            taskBoard[cell.row][cell.column] = geometry.toSymbol(n);
 
-            threadBoard[cell.row][cell.column] = (char) (n + '0' + 1);
+            tasks.add(new SearchTask(taskBoard, parallelSearch, parallelDepth + 1));
+        }
 
-            threadsBoards.add(threadBoard);
+        if(ForkJoinTask.inForkJoinPool())
+            ForkJoinTask.invokeAll(tasks);
+        else
+            ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
 
-            Thread t = new Thread(
-                new Runnable() {
+        if(!root)
+            return parallelSearch.isDone();
 
-                    int threadId = currentThread;
+        char[][] solution = parallelSearch.first.get();
+        solutionsFound = Math.min(parallelSearch.solutions.get(), solutionLimit);
+        budgetExceeded = parallelSearch.stopped && solutionsFound < solutionLimit;
+        if(solution == null)
+            return false;
 
-                    @Override
-                    public void run() {
-                        var s = new SudokuGame(false, false);
+        for(int r = 0; r < size; r++)
+            System.arraycopy(solution[r], 0, board[r], 0, size);
+        if(solutionLimit > 1)
+            copyBoard(board, firstSolution);
 
-                        s.solveSudoku(threadBoard);
+        //the search state of this game is left as it was, only the board is solved
+        cellsLeft = 0;
+        return solutionsFound >= solutionLimit;
+    }
 
-                        threadsResults[threadId] = s.cellsLeft == 0;
-                    }
-                }
-            );
+    //true once the search must stop: another branch finished it, or it is over budget
+    private boolean isSearchCancelled()
+    {
+        if(budgetExceeded || (parallelSearch != null && parallelSearch.isDone()))
+            return true;
+        if(!isOverBudget())
+            return false;
 
-            t.start();
+        budgetExceeded = true;
+        if(parallelSearch != null)
+            parallelSearch.stopped = true;
+        return true;
+    }
 
-            threads.add(t);
+    private boolean isOverBudget()
+    {
+        final SudokuGame owner = parallelSearch != null ? parallelSearch.owner : this;
+        return owner.cancelled
+            || (maxGuesses > 0 && stats.guesses >= maxGuesses)
+            || (searchDeadline != NO_DEADLINE && stats.guesses % CLOCK_INTERVAL == 0
+                && System.nanoTime() - searchDeadline > 0);
+    }
+
+    //shared by all the games of one parallel search: the solutions found so far and the first of them
+    private static class ParallelSearch {
+
+        private final long limit;
+        private final SudokuTechnique[] eliminations;
+        private final AtomicLong solutions = new AtomicLong();
+        private final AtomicReference<char[][]> first = new AtomicReference<>();
+
+        //the game the search was started from, whose budget the branches share, and whether one ran out of it
+        private final SudokuGame owner;
+        private volatile boolean stopped = false;
+
+        ParallelSearch(long limit, SudokuTechnique[] eliminations, SudokuGame owner)
+        {
+            this.limit = limit;
+            this.eliminations = eliminations;
+            this.owner = owner;
         }
 
-        for(Thread t : threads)
-            t.join();
+        boolean isDone()
+        {
+            return stopped || solutions.get() >= limit;
+        }
 
-        return false;
+        //the board keeps changing as the search goes on, so the first solution is copied
+        boolean solutionFound(char[][] board)
+        {
+            if(first.get() == null)
+            {
+                char[][] copy = new char[board.length][];
+                for(int r = 0; r < board.length; r++)
+                    copy[r] = board[r].clone();
+                first.compareAndSet(null, copy);
+            }
+            return solutions.incrementAndGet() >= limit;
+        }
     }
 
-    
+    //solves one branch of a parallel search on its own copy of the board
+    private static class SearchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final char[][] board;
+        private final ParallelSearch search;
+        private final int depth;
+
+        SearchTask(char[][] board, ParallelSearch search, int depth)
+        {
+            this.board = board;
+            this.search = search;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(search.isDone())
+                return;
+
+            //solutions are counted by the game as it finds them
+            var game = new SudokuGame(board, search, depth);
+            try {
+                game.analyseBoard();
+                game.solveBoard();
+            }
+            catch(SudokuException se) {
+                //contradiction: dead branch
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 
-    private boolean solveBoardBacktrackingSingleThread(final boolean firstBacktrackingLevel) throws InterruptedException
+    private boolean solveBoardBacktrackingSingleThread() throws InterruptedException
     {
-        // boolean firstBacktrackingLevel = firstLevel;
-        // if(!backtracking)
-        //     firstBacktrackingLevel = true;
-        assert cellPriorityQueue[0].isEmpty();
+        assert cellPriorityQueue.isEmpty(1);
+
+        if(isSearchCancelled())
+            return false;
 
-        SudokuCell cell = popQueue();
+        SudokuCell cell = peekQueue();
         if(cell == null) 
         {
             assert cellsLeft == 0;
-            return true;
+            return solutionFound();
         }
         assert !cell.isSolved(board);
-        assert !cell.hasAttempt(board);
         assert cell.getPossibleNumbersCount() > 1;
 
-        int numbersTested = 0;
-        for(int n = 0; n < SUDOKU_SIZE; n++)
-        {
-            if(!cell.isNumberPossible(n))
-                continue;
+        final int depth = ++searchDepth;
+        stats.maxDepth = Math.max(stats.maxDepth, depth);
+
+        final var event = SudokuEvents.isRecording() ? new SudokuEvents.Backtrack() : null;
+        if(event != null)
+            event.begin();
+        int tried = 0;
+        boolean solved = false;
 
-            if(firstBacktrackingLevel && numbersTested > 0)
+        try {
+            for(long candidates = cell.getPossibleNumbers(); candidates != 0; candidates &= candidates - 1)
             {
-                if(cell.getPossibleNumbersCount() == 1)
-                {
-                    solveCell(cell);
-                    assert cell.isSolved(board);
-                    return solveBoard();
+                final int n = Long.numberOfTrailingZeros(candidates);
+                final int trailMark = trailSize;
+                tried++;
+                stats.guesses++;
+
+                //every guess is followed by full propagation, undone through the trail if it fails
+                try {
+                    setPossibleNumbers(cell, 1L << n);
+                    solved = solveBoard();
+                    if(solved)
+                        return true;
                 }
-                else
-                {
-                    analyseRowOneOccurences(cell.row);
-                    analyseColumnOneOccurences(cell.column);
-                    analyseRegionOneOccurences(cell.region);
-                    if(cellPriorityQueue[0].size() > 0)
-                    {
-                        addToQueue(cell, -1);
-                        return solveBoard();
-                    }
+                catch(SudokuException se) {
+                    assert se == NO_SOLUTION;
                 }
-            }
-    
-            if(!attemptSolveCell(cell, n)) 
-            {
-                assert !cell.hasAttempt(board);
-                assert !firstBacktrackingLevel;
-                continue;
-            }
-            assert cell.hasAttempt(board);
 
-            boolean successful = solveBoardBacktrackingSingleThread(false);
-            if(successful) return true;
+                stats.backtracks++;
+                undoTrail(trailMark);
+                assert getQueueSize() == cellsLeft : getQueueSize() + " " + cellsLeft;
 
-            undoCell(cell);
-
-            assert !cell.hasAttempt(board);
-
-            if(firstBacktrackingLevel)
-                cell.markNumberAsNotPossible(n);
+                if(isSearchCancelled())
+                    return false;
+            }
 
-            numbersTested++;
-            assert numbersTested > 0 && numbersTested <= SUDOKU_SIZE;
+            return false;
         }
+        finally {
+            searchDepth--;
+            if(event != null)
+            {
+                event.end();
+                if(event.shouldCommit())
+                {
+                    event.depth = depth;
+                    event.cell = cell.index;
+                    event.possibleNumbers = cell.getPossibleNumbersCount();
+                    event.tried = tried;
+                    event.solved = solved;
+                    event.commit();
+                }
+            }
+        }
+    }
 
-        assert !firstBacktrackingLevel;
-        
-        addTryCellBackToQueue(cell);
-        
-        assert getQueueSize() == cellsLeft : getQueueSize() + " " + cellsLeft;
+    //true once the search can stop: a solution was found, or as many as the limit
+    private boolean solveBoard() throws InterruptedException
+    {
+        if(propagate())
+            return solutionFound();
 
-        return false;
+        return solveBoardBacktracking();
     }
 
-    private boolean solveBoard() throws InterruptedException
+    //places singles until the board is solved (true) or only guessing is left (false)
+    private boolean propagate()
     {
-        while(cellsLeft > 0)
-        {
-            assert getQueueSize() == cellsLeft;
-            SudokuCell cell = popQueueFirstLevel();
+        final var event = SudokuEvents.isRecording() ? new SudokuEvents.Propagation() : null;
+        if(event != null)
+            event.begin();
+        final long placements = stats.placements;
+        final long hiddenSingles = stats.hiddenSingles;
 
-            if(cell == null)
+        try {
+            while(cellsLeft > 0)
             {
-                findOneOccurrences();
+                assert getQueueSize() == cellsLeft;
+                SudokuCell cell = popQueueFirstLevel();
+
+                if(cell == null)
+                {
+                    findOneOccurrences();
+
+                    if(cellPriorityQueue.isEmpty(1) && !applyEliminations())
+                        return false;
+                }
+                else
+                {
+                    solveCell(cell);
+                    assert cell.isSolved(board);
+                }
 
-                if(cellPriorityQueue[0].isEmpty())
-                    return solveBoardBacktracking();
+                assert sudokuSanityCheck();
             }
-            else
+            assert cellsLeft == 0;
+            return true;
+        }
+        finally {
+            if(event != null)
             {
-                solveCell(cell);
-                assert cell.isSolved(board);
+                event.end();
+                if(event.shouldCommit())
+                {
+                    event.depth = searchDepth;
+                    event.placements = stats.placements - placements;
+                    event.hiddenSingles = stats.hiddenSingles - hiddenSingles;
+                    event.cellsLeft = cellsLeft;
+                    event.commit();
+                }
             }
+        }
+    }
 
-            assert sudokuSanityCheck();
+    //true once a technique removed candidates, which may leave new singles
+    private boolean applyEliminations()
+    {
+        for(SudokuTechnique technique : eliminations)
+            if(technique.apply(candidates, techniqueScratch))
+            {
+                stats.techniqueSteps++;
+                return true;
+            }
+        return false;
+    }
+
+    //the free cells as the techniques see them, every change going through the trail
+    private class Candidates implements SudokuCandidates {
+
+        @Override
+        public SudokuGeometry getGeometry()
+        {
+            return geometry;
+        }
+
+        @Override
+        public long getCandidates(int cell)
+        {
+            return cellPool[cell].getPossibleNumbers();
+        }
+
+        @Override
+        public void eliminate(int index, long numbers)
+        {
+            SudokuCell cell = cellPool[index];
+            final long possible = cell.getPossibleNumbers();
+            if((possible & numbers) == 0) return;
+
+            setPossibleNumbers(cell, possible & ~numbers);
+            stats.eliminations += Long.bitCount(possible & numbers);
+            if((possible & ~numbers) == 0)
+                throw NO_SOLUTION;
         }
-        assert cellsLeft == 0;
-        return true;
     }
 
+    //only the units touched since their last scan can hold a new hidden single
     private void findOneOccurrences() {
-        for(int i = 0; i < SUDOKU_SIZE; i++)
+        for(int unit = 0; unit < dirtyUnits.length; unit++)
         {
-            analyseRowOneOccurences(i);
-            analyseColumnOneOccurences(i);
-            analyseRegionOneOccurences(i);
+            if(!dirtyUnits[unit]) continue;
+
+            dirtyUnits[unit] = false;
+            analyseUnitOneOccurences(unit);
         }
     }
 
+    private void markUnitsDirty(SudokuCell cell)
+    {
+        dirtyUnits[geometry.row(cell.row)] = true;
+        dirtyUnits[geometry.column(cell.column)] = true;
+        dirtyUnits[geometry.region(cell.region)] = true;
+    }
+
     private boolean sudokuSanityCheck()
     {
         if(leetcodeJudging) return true;
 
-        byte[] rowsCount = new byte[SUDOKU_SIZE];
-        byte[] columnsCount = new byte[SUDOKU_SIZE];
-        byte[] regionsCount = new byte[SUDOKU_SIZE];
-        byte occupiedCells = 0;
+        long[] rowsMask = new long[size];
+        long[] columnsMask = new long[size];
+        long[] regionsMask = new long[size];
+        int occupiedCells = 0;
 
-        for(int r = 0; r < SUDOKU_SIZE; r++)
+        for(int r = 0; r < size; r++)
         {
-            for(int c = 0; c < SUDOKU_SIZE; c++)
+            for(int c = 0; c < size; c++)
             {
                 SudokuCell cell = getSudokuCell(r, c);
                 final int n = cell.getNumber(board);
@@ -327,24 +799,24 @@ class SudokuGame {
                     continue; 
                 }
 
-                assert rowsNumbers[r][n] == true;
-                assert columnsNumbers[c][n] == true;
-                assert regionsNumbers[cell.region][n] == true;
-                rowsCount[r]++;
-                columnsCount[c]++;
-                regionsCount[cell.region]++;
+                assert (rowsNumbers[r] & (1L << n)) != 0;
+                assert (columnsNumbers[c] & (1L << n)) != 0;
+                assert (regionsNumbers[cell.region] & (1L << n)) != 0;
+                rowsMask[r] |= 1L << n;
+                columnsMask[c] |= 1L << n;
+                regionsMask[cell.region] |= 1L << n;
                 occupiedCells++;       
                         
             }
         }
 
-        assert occupiedCells == SUDOKU_N_CELLS - this.cellsLeft;
+        assert occupiedCells == nCells - this.cellsLeft;
 
-        for(int i = 0; i < SUDOKU_SIZE; i++)
+        for(int i = 0; i < size; i++)
         {
-            assert rowsCount[i] == this.rowsNumbersCount[i];
-            assert columnsCount[i] == this.columnsNumbersCount[i];
-            assert regionsCount[i] == this.regionsNumbersCount[i];
+            assert rowsMask[i] == this.rowsNumbers[i];
+            assert columnsMask[i] == this.columnsNumbers[i];
+            assert regionsMask[i] == this.regionsNumbers[i];
         }
 
         return true;
@@ -353,20 +825,20 @@ class SudokuGame {
     private void analyseBoard()
     {
         assert !boardAnalysed;
-        if(board.length != SUDOKU_SIZE)
+        if(board.length != size)
             throw new SudokuException("Invalid board!");
 
-        for(int l = 0; l < SUDOKU_SIZE; l++)
+        for(int l = 0; l < size; l++)
         {
-            if(board[l].length != SUDOKU_SIZE)
+            if(board[l].length != size)
                 throw new SudokuException("Invalid board!");
 
-            for(int c = 0; c < SUDOKU_SIZE; c++)
+            for(int c = 0; c < size; c++)
                 createAndAnalyseCell(l, c);
         }
 
-        for(int l = 0; l < SUDOKU_SIZE; l++)
-            for(int c = 0; c < SUDOKU_SIZE; c++)
+        for(int l = 0; l < size; l++)
+            for(int c = 0; c < size; c++)
             {
                 SudokuCell cell = getSudokuCell(l, c);
                 boolean validCell = analyseCellPossibleNumbers(cell);
@@ -375,130 +847,68 @@ class SudokuGame {
             }
 
         assert getQueueSize() == cellsLeft;
-        assert cellsLeft >= 0 && cellsLeft <= SUDOKU_N_CELLS;
+        assert cellsLeft >= 0 && cellsLeft <= nCells;
         initialFreeCellsNumber = cellsLeft;
 
         boardAnalysed = true;
     }
 
-    private void analyseRowOneOccurences(int row)
+    private long getUnitNumbers(int unit)
     {
-        if(rowsNumbersCount[row] == SUDOKU_SIZE) return;
+        if(unit < size)
+            return rowsNumbers[unit];
+        if(unit < 2*size)
+            return columnsNumbers[unit - size];
+        return regionsNumbers[unit - 2*size];
+    }
 
-        for(int n = 0; n < SUDOKU_SIZE; n++)
-        {
-            if(rowsNumbers[row][n] == true) continue;
-            int occurences = 0;
-            SudokuCell occurencePos = null;
-            for(int c = 0; c < SUDOKU_SIZE; c++)
-            {
-                if(columnsNumbersCount[c] == SUDOKU_SIZE) continue;
-                var cell = getSudokuCell(row, c);
-                if(cell.isNumberPossible(n))
-                {
-                    occurencePos = cell;
-                    occurences++;
-                }
-                if(occurences == 2)
-                    break;
-            }
+    private void analyseUnitOneOccurences(int unit)
+    {
+        final long unitNumbers = getUnitNumbers(unit);
+        if(unitNumbers == allNumbers) return;
 
-            if(occurences == 1)
-            {
-                assert occurencePos != null;
-                processOneOccurence(occurencePos, n);
-            }
-            else if(occurences == 0)
-                throw new SudokuException("Board has no solutions!");
+        final int[] unitCells = geometry.units[unit];
+
+        //numbers possible in at least one / in at least two cells of the unit
+        long once = 0, twice = 0;
+        for(int i : unitCells)
+        {
+            long possible = cellPool[i].getPossibleNumbers();
+            twice |= once & possible;
+            once |= possible;
         }
-    }
 
-    private void analyseColumnOneOccurences(int column)
-    {
-        if(columnsNumbersCount[column] == SUDOKU_SIZE) return;
+        if((~unitNumbers & ~once & allNumbers) != 0)
+            throw NO_SOLUTION;
 
-        for(int n = 0; n < SUDOKU_SIZE; n++)
+        for(long single = once & ~twice; single != 0; single &= single - 1)
         {
-            if(columnsNumbers[column][n] == true) continue;
-            int occurences = 0;
-            SudokuCell occurencePos = null;
-            for(int l = 0; l < SUDOKU_SIZE; l++)
+            final int n = Long.numberOfTrailingZeros(single);
+            boolean found = false;
+            for(int i = 0; i < unitCells.length && !found; i++)
             {
-                if(rowsNumbersCount[l] == SUDOKU_SIZE) continue;
-                var cell = getSudokuCell(l, column);
+                var cell = cellPool[unitCells[i]];
                 if(cell.isNumberPossible(n))
                 {
-                    occurencePos = cell;
-                    occurences++;
+                    processOneOccurence(cell, n);
+                    found = true;
                 }
-                if(occurences == 2)
-                    break;
-            }
-
-            if(occurences == 1)
-            {
-                assert occurencePos != null;
-                processOneOccurence(occurencePos, n);
             }
-            else if(occurences == 0)
-                throw new SudokuException("Board has no solutions!");
+            //the only cell was already reduced to another number
+            if(!found)
+                throw NO_SOLUTION;
         }
     }
 
     private void processOneOccurence(SudokuCell cell, int num)
     {
         if(cell.getPossibleNumbersCount() == 1) return;
-        int oldCount = cell.getPossibleNumbersCount();
-        for(int i = 0; i < SUDOKU_SIZE; i++)
-        {
-            if(i != num)
-                cell.markNumberAsNotPossible(i);
-            else
-                assert cell.isNumberPossible(num);
-        }
 
-        assert cell.getPossibleNumbersCount() == 1;
-        cell.oneOccurence = true;
-        
-        addToQueue(cell, oldCount);
-    }
+        assert cell.isNumberPossible(num);
+        setPossibleNumbers(cell, 1L << num);
+        stats.hiddenSingles++;
 
-    private void analyseRegionOneOccurences(int region)
-    {
-        if(regionsNumbersCount[region] == SUDOKU_SIZE) return;
-
-        int rl = region/3;
-        int rc = region%3;
-                        
-        for(int n = 0; n < SUDOKU_SIZE; n++)
-        {
-            if(regionsNumbers[region][n] == true) continue;
-            int occurences = 0;
-            SudokuCell occurencePos = null;
-            for(int l = rl*3; l < rl*3 + 3 && occurences < 2; l++)
-            {
-                if(rowsNumbersCount[l] == SUDOKU_SIZE) continue;
-                for(int c = rc*3; c < rc*3 + 3; c++)
-                {
-                    if(columnsNumbersCount[c] == SUDOKU_SIZE) continue;
-                    var cell = getSudokuCell(l, c);
-                    if(cell.isNumberPossible(n))
-                    {
-                        occurencePos = cell;
-                        occurences++;
-                    }
-                    if(occurences == 2)
-                        break;
-                }
-            }
-            if(occurences == 1)
-            {
-                assert occurencePos != null;
-                processOneOccurence(occurencePos, n);
-            }
-            else if(occurences == 0)
-                throw new SudokuException("Board has no solutions!");
-        }
+        assert cell.getPossibleNumbersCount() == 1;
     }
 
     private boolean analyseCell(SudokuCell cell)
@@ -520,35 +930,21 @@ class SudokuGame {
 
         final int n = cell.getNumber(board);
 
+        final long bit = 1L << n;
+
         boolean validCell = 
-            rowsNumbers[cell.row][n] == columnsNumbers[cell.column][n]
-        &&  columnsNumbers[cell.column][n] == regionsNumbers[cell.region][n]
-        &&  regionsNumbers[cell.region][n] == rowsNumbers[cell.row][n];
+            ((rowsNumbers[cell.row] | columnsNumbers[cell.column] | regionsNumbers[cell.region]) & bit) == 0;
 
         if(!validCell)
             return false;
 
-        assert rowsNumbers[cell.row][n] == false;
-        rowsNumbers[cell.row][n] = true;
-        rowsNumbersCount[cell.row]++;
-        assert rowsNumbersCount[cell.row] <= SUDOKU_SIZE 
-            && rowsNumbersCount[cell.row] >= 1;
-    
-        assert columnsNumbers[cell.column][n] == false;
-        columnsNumbers[cell.column][n] = true;
-        columnsNumbersCount[cell.column]++;
-        assert columnsNumbersCount[cell.column] <= SUDOKU_SIZE 
-            && columnsNumbersCount[cell.column] >= 1;
-
-        assert regionsNumbers[cell.region][n] == false;
-        regionsNumbers[cell.region][n] = true;
-        regionsNumbersCount[cell.region]++;
-        assert regionsNumbersCount[cell.region] <= SUDOKU_SIZE 
-            && regionsNumbersCount[cell.region] >= 1;
-        
+        rowsNumbers[cell.row] |= bit;
+        columnsNumbers[cell.column] |= bit;
+        regionsNumbers[cell.region] |= bit;
+
 
         cellsLeft--;
-        assert cellsLeft >= 0 && cellsLeft <= SUDOKU_N_CELLS;
+        assert cellsLeft >= 0 && cellsLeft <= nCells;
 
         return true;
     }
@@ -560,23 +956,11 @@ class SudokuGame {
         if(cell.isSolved(board))
             return true;
 
-        if(cell.oneOccurence)
-        {
-            assert cell.getPossibleNumbersCount() == 1;   
-            return true;
-        }
-                    
         int previousCellPossibleNumbersCount = cell.getPossibleNumbersCount();
     
-        for(int n = 0; n < SUDOKU_SIZE; n++)
-        {
-            if( rowsNumbers[cell.row][n] == true
-            ||  columnsNumbers[cell.column][n] == true
-            ||  regionsNumbers[cell.region][n] == true)
-                cell.markNumberAsNotPossible(n);
-            else
-                cell.markNumberAsPossible(n);
-        }
+        cell.setPossibleNumbers(
+            ~(rowsNumbers[cell.row] | columnsNumbers[cell.column] | regionsNumbers[cell.region]) & allNumbers
+        );
         
         assert !boardAnalysed 
         ||     cell.getPossibleNumbersCount() <= previousCellPossibleNumbersCount;
@@ -591,82 +975,32 @@ class SudokuGame {
 
     private void addToQueue(SudokuCell cell, int previousCellPossibleNumbersCount)
     {
-        // assert !backtracking || cellPriorityQueue[0].isEmpty();
         assert cell != null;
         assert !cell.isSolved(board);
         assert !cell.hasAttempt(board);
         assert previousCellPossibleNumbersCount <= 0 
         || cell.getPossibleNumbersCount() <= previousCellPossibleNumbersCount;
 
-        int previousQueueLevel = possibleNumbersToQueueLevel(
-            previousCellPossibleNumbersCount 
-        );
+        final int count = cell.getPossibleNumbersCount();
 
-        int queueLevel = possibleNumbersToQueueLevel(
-            cell.getPossibleNumbersCount() 
-        );
-        
-        if(cell.getPossibleNumbersCount() == previousCellPossibleNumbersCount) {
-            assert previousQueueLevel == queueLevel;
-            assert leetcodeJudging || cellPriorityQueue[queueLevel].contains(cell);   
+        if(count == previousCellPossibleNumbersCount) {
+            assert leetcodeJudging || cellPriorityQueue.bucketOf(cell.index) == count;
             return;
         }
 
-        if(queueLevel == previousQueueLevel) {
-            assert leetcodeJudging || cellPriorityQueue[queueLevel].contains(cell);   
-            return;
-        }
-
-        if(previousCellPossibleNumbersCount > 0)
-        {
-            boolean removed = cellPriorityQueue[
-                possibleNumbersToQueueLevel(
-                    previousCellPossibleNumbersCount
-                )
-            ].removeIf(n -> n == cell);
-
-            assert removed;
-        }
-        else 
-            assert leetcodeJudging || !isCellInQueue(cell);
-
-        
-        
-        // if (queueLevel == 2 && hasLessPossibleNumbersThanLastQueueFirstCell(cell))
-        //     cellPriorityQueue[2].addFirst(cell);
-        // else
-            cellPriorityQueue[queueLevel].addLast(cell);
-    }
-
-    private boolean hasLessPossibleNumbersThanLastQueueFirstCell(SudokuCell cell)
-    {
-        var firstQ = cellPriorityQueue[2].peek();
-
-        if(firstQ == null) return true;
-
-        return cell.getPossibleNumbersCount() <= firstQ.getPossibleNumbersCount();
-    }
-
-    private void addTryCellBackToQueue(SudokuCell cell)
-    {
-        assert leetcodeJudging || !isCellInQueue(cell);
-
-        int queueLevel = possibleNumbersToQueueLevel(
-            cell.getPossibleNumbersCount() 
-        );
-
-        cellPriorityQueue[queueLevel].addFirst(cell);
+        //a cell taken out for backtracking can be reduced before it is put back
+        if(cellPriorityQueue.contains(cell.index))
+            cellPriorityQueue.move(cell.index, count);
+        else
+            cellPriorityQueue.addLast(cell.index, count);
     }
 
-    private SudokuCell popQueueLevel(int level)
+    private SudokuCell toCell(int index)
     {
-        // assert !backtracking || cellPriorityQueue[0].isEmpty();
-
-        assert level >= 0 && level < QUEUE_PRIORITY_LEVELS;
-        if(cellPriorityQueue[level].isEmpty())
+        if(index < 0)
             return null;
-        
-        SudokuCell cell = cellPriorityQueue[level].pop();
+
+        SudokuCell cell = cellPool[index];
 
         assert !cell.isSolved(board);
         assert !cell.hasAttempt(board);
@@ -677,217 +1011,165 @@ class SudokuGame {
     
     private SudokuCell popQueueFirstLevel()
     {
-        SudokuCell cell =  popQueueLevel(0);
+        SudokuCell cell = toCell(cellPriorityQueue.pollFirst(1));
 
         assert cell == null || cell.getPossibleNumbersCount() == 1;
 
         return cell;
     }
 
-    private SudokuCell popQueue()
+    //the cell with the fewest possible numbers, left in the queue
+    private SudokuCell peekQueue()
     {
-        for(int l = 0; l < QUEUE_PRIORITY_LEVELS; l++)
-        {
-            SudokuCell cell = popQueueLevel(l);
-            if(cell != null) return cell;
-        }
-        return null;
-    }
-
-    private SudokuCell popCellWithMostPossibilities()
-    {
-        assert useMultithreading;
-
-        int largestCp = 0;
-        SudokuCell cellPos = null;
-
-        int l = QUEUE_PRIORITY_LEVELS - 1;
-        for(; l >= 0; l--)
-        {
-            cellPos = Collections.max(cellPriorityQueue[l]);
-            // for(SudokuCell c : cellPriorityQueue[l])
-            // {
-            //     if(c.getPossibleNumbersCount() > largestCp)
-            //     {
-            //         cellPos = c;
-            //         largestCp = c.getPossibleNumbersCount();
-            //         if(largestCp == SUDOKU_SIZE) break;
-            //     }
-            // }
-            if(cellPos != null) break;
-        }
-        assert cellPos != null;
-
-        boolean cellRemoved = cellPriorityQueue[l].remove(cellPos);
-        assert cellRemoved;
-
-        return cellPos;
+        return toCell(cellPriorityQueue.peekMin(1));
     }
 
     private int getQueueSize()
     {
-        return cellPriorityQueue[0].size() 
-            + cellPriorityQueue[1].size() 
-            + cellPriorityQueue[2].size();
+        return cellPriorityQueue.size();
     }
 
     private boolean isCellInQueue(SudokuCell cell)
     {
-        for(int l = QUEUE_PRIORITY_LEVELS - 1; l >= 0; l--)
-            if(cellPriorityQueue[l].contains(cell))
-                return true;
-
-        return false;
+        return cellPriorityQueue.contains(cell.index);
     }
 
-    private void updateAffectedCells(SudokuCell cell)
+    //every change of possible numbers during solving goes through here so it can be undone
+    private void setPossibleNumbers(SudokuCell cell, long possibleNumbers)
     {
-        assert cell != null;
-        for(int r = 0; r < SUDOKU_SIZE; r++)
-        {
-            if(r == cell.row) continue;
-
-            var rCell = getSudokuCell(r, cell.column);
-            boolean valid = analyseCellPossibleNumbers(rCell);
-            if(!valid)
-                throw new SudokuException("Board has no solutions!");
-        }
+        final long previous = cell.getPossibleNumbers();
+        if(previous == possibleNumbers) return;
+        assert (possibleNumbers & ~previous) == 0;
+
+        trailCells[trailSize] = cell.index;
+        trailValues[trailSize] = previous;
+        trailSize++;
+
+        cell.setPossibleNumbers(possibleNumbers);
+        markUnitsDirty(cell);
+        if(cellPriorityQueue.contains(cell.index))
+            cellPriorityQueue.move(cell.index, Long.bitCount(possibleNumbers));
+    }
 
-        for(int c = 0; c < SUDOKU_SIZE; c++)
+    private void undoTrail(int trailMark)
+    {
+        while(trailSize > trailMark)
         {
-            if(c == cell.column) continue;
+            trailSize--;
+            final int index = trailCells[trailSize];
+            final long previous = trailValues[trailSize];
+            SudokuCell cell = cellPool[index];
 
-            var cCell = getSudokuCell(cell.row, c);
-            boolean valid = analyseCellPossibleNumbers(cCell);
-            if(!valid)
-                throw new SudokuException("Board has no solutions!");
-        }
-
-        int rl = cell.region/3;
-        int rc = cell.region%3;
-        for(int l = rl*3; l < rl*3 + 3; l++)
-        {
-            if(l == cell.row) continue;
-            for(int c = rc*3; c < rc*3 + 3; c++)
+            if(previous == PLACEMENT)
             {
-                if(c == cell.column) continue;
-                var rCell = getSudokuCell(l, c);
-                boolean valid = analyseCellPossibleNumbers(rCell);
-                if(!valid)
-                    throw new SudokuException("Board has no solutions!");
+                undoCell(cell);
+                continue;
             }
+
+            cell.setPossibleNumbers(previous);
+            markUnitsDirty(cell);
+            if(!cell.isFree(board))
+                continue;
+
+            if(cellPriorityQueue.contains(cell.index))
+                cellPriorityQueue.move(cell.index, Long.bitCount(previous));
+            else
+                cellPriorityQueue.addLast(cell.index, Long.bitCount(previous));
         }
     }
 
-    private void solveCell(SudokuCell cell)
+    private void eliminateNumber(SudokuCell cell, long bit)
     {
-        assert cell != null;
-        assert cell.getPossibleNumbersCount() == 1;
-        int n = SUDOKU_SIZE - 1;
-        //should always be the last possibility
-        for(; n >= 0; n--)
-            if(cell.isNumberPossible(n))
-                break;
+        final long possible = cell.getPossibleNumbers();
+        if((possible & bit) == 0) return;
 
-        board[cell.row][cell.column] = (char) ('0' + n + 1);
-
-        boolean validCell = analyseCell(cell);
-        if(!validCell)
-            throw new SudokuException("Board has no solutions!");
+        setPossibleNumbers(cell, possible & ~bit);
+        stats.eliminations++;
+        if(possible == bit)
+            throw NO_SOLUTION;
+    }
 
-        cell.markNumberAsNotPossible(n);
-        assert cell.getPossibleNumbersCount() == 0;
-        assert cell.isSolved(board);
+    private void updateAffectedCells(SudokuCell cell, int n)
+    {
+        assert cell != null;
+        final long bit = 1L << n;
 
-        updateAffectedCells(cell);
+        for(int peer : geometry.peers[cell.index])
+            eliminateNumber(cellPool[peer], bit);
     }
 
-    private boolean attemptSolveCell(SudokuCell cell, int n)
+    private void solveCell(SudokuCell cell)
     {
         assert cell != null;
-        assert cell.getPossibleNumbersCount() > 1;
-        assert !cell.isSolved(board);
-        assert !cell.hasAttempt(board);
+        assert cell.getPossibleNumbersCount() == 1;
+        assert !isCellInQueue(cell);
+        final int n = cell.getLowestPossibleNumber();
 
-        if(rowsNumbers[cell.row][n] == true
-        || columnsNumbers[cell.column][n] == true
-        || regionsNumbers[cell.region][n] == true)
-            return false;
+        setPossibleNumbers(cell, 0);
+        stats.placements++;
 
-        board[cell.row][cell.column] = (char) ('0' + n + 1);
+        board[cell.row][cell.column] = geometry.toSymbol(n);
 
+        //possible numbers never include numbers already placed in the cell's units
         boolean validCell = analyseCell(cell);
         assert validCell;
 
-        assert cell.hasAttempt(board);
+        trailCells[trailSize] = cell.index;
+        trailValues[trailSize] = PLACEMENT;
+        trailSize++;
 
-        return true;
+        assert cell.isSolved(board);
+
+        updateAffectedCells(cell, n);
     }
 
     private void undoCell(SudokuCell cell)
     {
         assert cell != null;
-        assert !cell.isSolved(board);
-        assert cell.hasAttempt(board);
+        assert cell.isSolved(board);
         
-        int n = board[cell.row][cell.column] - '0' - 1;
-        assert n < SUDOKU_SIZE && n >= 0;
+        int n = cell.getNumber(board);
+        assert n < size && n >= 0;
 
         board[cell.row][cell.column] = '.';
         
-        rowsNumbers[cell.row][n] = false;
-        rowsNumbersCount[cell.row]--;
-        assert rowsNumbersCount[cell.row] <= SUDOKU_SIZE 
-            && rowsNumbersCount[cell.row] >= 0;
-
-        columnsNumbers[cell.column][n] = false;
-        columnsNumbersCount[cell.column]--;
-        assert columnsNumbersCount[cell.column] <= SUDOKU_SIZE 
-            && columnsNumbersCount[cell.column] >= 0;
+        final long bit = 1L << n;
+        assert (rowsNumbers[cell.row] & bit) != 0;
+        assert (columnsNumbers[cell.column] & bit) != 0;
+        assert (regionsNumbers[cell.region] & bit) != 0;
 
-        regionsNumbers[cell.region][n] = false;
-        regionsNumbersCount[cell.region]--;
-        assert regionsNumbersCount[cell.region] <= SUDOKU_SIZE 
-            && regionsNumbersCount[cell.region] >= 0;
+        rowsNumbers[cell.row] &= ~bit;
+        columnsNumbers[cell.column] &= ~bit;
+        regionsNumbers[cell.region] &= ~bit;
 
         cellsLeft++;       
 
         assert cellsLeft >= 0 && cellsLeft <= initialFreeCellsNumber; 
-        assert !cell.hasAttempt(board);
-    }
-
-    private int possibleNumbersToQueueLevel(int possibleNumbers)
-    {   
-        assert possibleNumbers >= 0 && possibleNumbers <= SUDOKU_SIZE;
-
-        if(possibleNumbers <= 2)
-            return possibleNumbers - 1;
-            
-        else return 2;
     }
 
     private void printBoard()
     {
+        final int box = geometry.boxSize;
         System.out.print("{");
-        for(int l = 0; l < SUDOKU_SIZE; l++)
+        for(int l = 0; l < size; l++)
         {
             System.out.print("{");
-            for(int c = 0; c < SUDOKU_SIZE; c++)
+            for(int c = 0; c < size; c++)
             {
                 System.out.print("\'" + board[l][c] + "\'");
-                if(c < SUDOKU_SIZE - 1)
+                if(c < size - 1)
                     System.out.print(',');
-                if(l == SUDOKU_SIZE - 1 && c == SUDOKU_SIZE - 1)
+                if(l == size - 1 && c == size - 1)
                     System.out.print("}");
                 
-                if((c + 1)%3 == 0 && c < SUDOKU_SIZE - 1)
+                if((c + 1)%box == 0 && c < size - 1)
                     System.out.print("\t");
             }
             System.out.print("}");
-            if((l + 1)%3 == 0)
+            if((l + 1)%box == 0)
                 System.out.println();
             System.out.println();
-            if(l < SUDOKU_SIZE - 1)
+            if(l < size - 1)
                 System.out.print(',');
         }
        
@@ -895,20 +1177,33 @@ class SudokuGame {
 
     public void printBoardSimple()
     {
-        for(int l = 0; l < SUDOKU_SIZE; l++)
+        printBoardSimple(board);
+    }
+
+    public static void printBoardSimple(char[][] board)
+    {
+        printBoardSimple(board, System.out);
+    }
+
+    public static void printBoardSimple(char[][] board, PrintStream out)
+    {
+        final int size = board.length;
+        final int box = SudokuGeometry.isValidSize(size) ? SudokuGeometry.of(size).boxSize : size;
+
+        for(int l = 0; l < size; l++)
         {
-            for(int c = 0; c < SUDOKU_SIZE; c++)
+            for(int c = 0; c < size; c++)
             {
-                System.out.print(board[l][c]);
-                if(c < SUDOKU_SIZE - 1)
-                    System.out.print(' ');
+                out.print(board[l][c]);
+                if(c < size - 1)
+                    out.print(' ');
                 
-                if((c + 1)%3 == 0 && c < SUDOKU_SIZE - 1)
-                    System.out.print("\t");
+                if((c + 1)%box == 0 && c < size - 1)
+                    out.print("\t");
             }
-            if((l + 1)%3 == 0)
-                System.out.println();
-            System.out.println();
+            if((l + 1)%box == 0)
+                out.println();
+            out.println();
         }
        
     }
@@ -916,33 +1211,31 @@ class SudokuGame {
     private SudokuCell createAndAnalyseCell(int row, int column)
     {
         assert !boardAnalysed;
-        assert row >= 0 && row < SUDOKU_SIZE;
-        assert column >= 0 && column < SUDOKU_SIZE;
-
-        assert cellPool[row][column] == null;
+        assert row >= 0 && row < size;
+        assert column >= 0 && column < size;
 
-        final int n = board[row][column] - '0' - 1;
-        boolean isClue = n >= 0 && n < SUDOKU_SIZE;
+        SudokuCell cell = getSudokuCell(row, column);
+        boolean isClue = geometry.toNumber(board[row][column]) != SudokuCell.FREE_CELL;
 
-        cellPool[row][column] = new SudokuCell((byte) row, (byte) column, isClue);
+        cell.reset(isClue);
 
-        boolean validCell = analyseCell(cellPool[row][column]);
+        boolean validCell = analyseCell(cell);
         if(!validCell)
             throw new SudokuException("Invalid board!");
 
-        return cellPool[row][column];
+        return cell;
 
     }
 
     private SudokuCell getSudokuCell(int row, int column)
     {
-        assert row >= 0 && row < SUDOKU_SIZE;
-        assert column >= 0 && column < SUDOKU_SIZE;
+        assert row >= 0 && row < size;
+        assert column >= 0 && column < size;
 
-        assert cellPool[row][column] != null;
+        assert cellPool[row*size + column] != null;
         
         // if(cellPool[row][column] != null) 
-        return cellPool[row][column];
+        return cellPool[row*size + column];
 
         // cellPool[row][column] = new SudokuCell((byte) row, (byte) column);
 
@@ -954,6 +1247,11 @@ class SudokuGame {
         public SudokuException(String message) {
             super(message);
         }
+
+        //shared instances thrown on every dead end of the search carry no stack trace
+        public SudokuException(String message, boolean writableStackTrace) {
+            super(message, null, false, writableStackTrace);
+        }
         
     }
 }
\ No newline at end of file
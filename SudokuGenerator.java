@@ -0,0 +1,374 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generates uniquely solvable puzzles. A full grid is made by solving a
+ * board whose diagonal boxes are filled at random, then shuffled with
+ * validity preserving transforms (relabeling, row and column permutations
+ * within bands and stacks, band and stack permutations, transposition).
+ * Clues are then removed in random order as long as the puzzle stays
+ * unique, until it has no more than the clue target or no clue can go.
+ *
+ * Removing the clue v of a cell keeps a unique puzzle unique exactly when
+ * no other number w fits there, so each removal is checked by solving the
+ * puzzle with w in the cell, which propagation usually rejects at once,
+ * instead of counting all the solutions of the puzzle.
+ *
+ * Puzzle i only depends on the seed and i, so runs are reproducible
+ * whatever the number of threads:
+ *   java SudokuGenerator --count=1000000 --seed=42 --output=binary --output-file=puzzles.bin
+ */
+public class SudokuGenerator {
+
+    //bands of the guesses needed to solve the puzzle
+    public enum Difficulty { ANY, EASY, MEDIUM, HARD }
+
+    private static final int MEDIUM_GUESSES = 1;
+    private static final int HARD_GUESSES = 4;
+
+    private static final int GAMES_PER_BATCH = 16;
+
+    private final SudokuGeometry geometry;
+    private final int size;
+    private final int maxClues;
+    private final Difficulty difficulty;
+
+    //one game checks every removal, boards are reused from puzzle to puzzle
+    private final SudokuGame game;
+    private final char[][] grid;
+    private final char[][] puzzle;
+    private final char[][] scratch;
+    private final int[] cells;
+    private final int[] permutation;
+
+    private long attempts = 0;
+
+    //maxClues 0 removes clues until none can go
+    public SudokuGenerator(int size, int maxClues, Difficulty difficulty)
+    {
+        this.geometry = SudokuGeometry.of(size);
+        this.size = size;
+        this.maxClues = maxClues;
+        this.difficulty = difficulty;
+
+        this.game = new SudokuGame(size, false);
+        this.grid = new char[size][size];
+        this.puzzle = new char[size][size];
+        this.scratch = new char[size][size];
+        this.cells = new int[geometry.nCells];
+        this.permutation = new int[size];
+    }
+
+    //full grids tried so far, including those whose puzzle missed the targets
+    public long getAttempts()
+    {
+        return attempts;
+    }
+
+    //fills board with a unique puzzle derived from seed alone
+    public void generate(long seed, char[][] board)
+    {
+        final SplittableRandom random = new SplittableRandom(seed);
+        do {
+            attempts++;
+            fillGrid(random);
+            removeClues(random);
+        } while(!isAccepted());
+
+        copy(puzzle, board);
+    }
+
+    private void fillGrid(SplittableRandom random)
+    {
+        final int box = geometry.boxSize;
+        for(char[] row : grid)
+            Arrays.fill(row, '.');
+
+        //diagonal boxes share no unit, so any filling of them is solvable
+        for(int b = 0; b < size; b += box)
+        {
+            shuffle(random, permutation, size);
+            for(int i = 0; i < size; i++)
+                grid[b + i/box][b + i%box] = geometry.toSymbol(permutation[i]);
+        }
+        final long solutions = game.countSolutions(grid, 1);
+        assert solutions == 1;
+
+        //numbers, rows and columns, all shuffled within what keeps the grid valid
+        final int[] numbers = new int[size];
+        final int[] rows = new int[size];
+        final int[] columns = new int[size];
+        shuffle(random, numbers, size);
+        shuffleLines(random, rows);
+        shuffleLines(random, columns);
+        final boolean transpose = random.nextBoolean();
+
+        for(int r = 0; r < size; r++)
+            for(int c = 0; c < size; c++)
+            {
+                final int n = numbers[geometry.toNumber(grid[rows[r]][columns[c]])];
+                if(transpose)
+                    puzzle[c][r] = geometry.toSymbol(n);
+                else
+                    puzzle[r][c] = geometry.toSymbol(n);
+            }
+        copy(puzzle, grid);
+    }
+
+    private void removeClues(SplittableRandom random)
+    {
+        shuffle(random, cells, cells.length);
+
+        int clues = geometry.nCells;
+        for(int cell : cells)
+        {
+            if(maxClues > 0 && clues <= maxClues)
+                break;
+
+            final int r = geometry.rowOf[cell];
+            final int c = geometry.columnOf[cell];
+            final char clue = puzzle[r][c];
+
+            puzzle[r][c] = '.';
+            if(isUnique(cell, geometry.toNumber(clue)))
+                clues--;
+            else
+                puzzle[r][c] = clue;
+        }
+    }
+
+    //whether the puzzle, unique with number n at cell, stays unique with cell free
+    private boolean isUnique(int cell, int n)
+    {
+        long fits = geometry.allNumbers & ~(1L << n);
+        for(int peer : geometry.peers[cell])
+        {
+            final int number = geometry.toNumber(puzzle[geometry.rowOf[peer]][geometry.columnOf[peer]]);
+            if(number != SudokuCell.FREE_CELL)
+                fits &= ~(1L << number);
+        }
+
+        final int r = geometry.rowOf[cell];
+        final int c = geometry.columnOf[cell];
+        for(; fits != 0; fits &= fits - 1)
+        {
+            copy(puzzle, scratch);
+            scratch[r][c] = geometry.toSymbol(Long.numberOfTrailingZeros(fits));
+            if(game.countSolutions(scratch, 1) > 0)
+                return false;
+        }
+        return true;
+    }
+
+    private boolean isAccepted()
+    {
+        if(maxClues > 0 && countClues() > maxClues)
+            return false;
+        if(difficulty == Difficulty.ANY)
+            return true;
+
+        copy(puzzle, scratch);
+        game.countSolutions(scratch, 1);
+        final long guesses = game.getStats().getGuesses();
+
+        switch(difficulty)
+        {
+            case EASY:
+                return guesses < MEDIUM_GUESSES;
+            case MEDIUM:
+                return guesses >= MEDIUM_GUESSES && guesses < HARD_GUESSES;
+            default:
+                return guesses >= HARD_GUESSES;
+        }
+    }
+
+    private int countClues()
+    {
+        int clues = 0;
+        for(char[] row : puzzle)
+            for(char symbol : row)
+                if(geometry.toNumber(symbol) != SudokuCell.FREE_CELL)
+                    clues++;
+        return clues;
+    }
+
+    //line order keeping every line in its band, with the bands themselves shuffled
+    private void shuffleLines(SplittableRandom random, int[] lines)
+    {
+        final int box = geometry.boxSize;
+        final int[] bands = new int[box];
+        final int[] inBand = new int[box];
+        shuffle(random, bands, box);
+
+        for(int b = 0; b < box; b++)
+        {
+            shuffle(random, inBand, box);
+            for(int i = 0; i < box; i++)
+                lines[b*box + i] = bands[b]*box + inBand[i];
+        }
+    }
+
+    //a random permutation of 0 .. length - 1
+    private static void shuffle(SplittableRandom random, int[] values, int length)
+    {
+        for(int i = 0; i < length; i++)
+        {
+            final int j = random.nextInt(i + 1);
+            values[i] = values[j];
+            values[j] = i;
+        }
+    }
+
+    private static void copy(char[][] from, char[][] to)
+    {
+        for(int r = 0; r < from.length; r++)
+            System.arraycopy(from[r], 0, to[r], 0, from[r].length);
+    }
+
+    //seed of puzzle index, spread so nearby indexes give unrelated streams
+    static long puzzleSeed(long seed, long index)
+    {
+        long z = seed + (index + 1)*0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30))*0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27))*0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        long count = 1000;
+        long seed = System.nanoTime();
+        int size = SudokuGame.SUDOKU_SIZE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxClues = 0;
+        Difficulty difficulty = Difficulty.ANY;
+        String outputFormat = "text";
+        String outputFile = null;
+
+        for(String arg : args)
+        {
+            if(arg.startsWith("--count="))
+                count = Long.parseLong(arg.substring("--count=".length()));
+            else if(arg.startsWith("--seed="))
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            else if(arg.startsWith("--size="))
+                size = Integer.parseInt(arg.substring("--size=".length()));
+            else if(arg.startsWith("--threads="))
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            else if(arg.startsWith("--clues="))
+                maxClues = Integer.parseInt(arg.substring("--clues=".length()));
+            else if(arg.startsWith("--difficulty="))
+                difficulty = Difficulty.valueOf(arg.substring("--difficulty=".length()).toUpperCase());
+            else if(arg.startsWith("--output="))
+                outputFormat = arg.substring("--output=".length());
+            else if(arg.startsWith("--output-file="))
+                outputFile = arg.substring("--output-file=".length());
+            else
+            {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(1);
+            }
+        }
+
+        if(!SudokuGeometry.isValidSize(size) || count < 0 || threads < 1 || maxClues < 0)
+        {
+            System.err.println("Usage: SudokuGenerator [--count=N] [--seed=S] [--size=N] [--threads=N] [--clues=N]"
+                + " [--difficulty=any|easy|medium|hard] [--output=text|compact|binary] [--output-file=PATH]");
+            System.exit(1);
+        }
+        System.err.println("seed: " + seed);
+
+        final OutputStream file = outputFile != null
+            ? Channels.newOutputStream(FileChannel.open(Path.of(outputFile),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+            : null;
+        final OutputStream out = file != null ? file : System.out;
+
+        SudokuOutput output;
+        switch(outputFormat)
+        {
+            case "compact":
+                output = SudokuTextOutput.compact(out, size);
+                break;
+            case "binary":
+                output = new SudokuBinaryOutput(new BufferedOutputStream(out, 1 << 16), size);
+                break;
+            case "text":
+                output = SudokuTextOutput.grid(out, size);
+                break;
+            default:
+                System.err.println("Unknown output format: " + outputFormat + " (expected text, compact or binary)");
+                System.exit(1);
+                return;
+        }
+
+        final long start = System.nanoTime();
+        try(file)
+        {
+            generate(output, count, seed, size, threads, maxClues, difficulty);
+        }
+
+        final double seconds = (System.nanoTime() - start)/1e9;
+        System.err.printf("%d puzzles in %.2f s, %.0f puzzles/s%n", count, seconds, count/seconds);
+    }
+
+    /**
+     * Writes count puzzles to output in index order, generated by threads
+     * workers. Batches of the ordered result writer are filled by whichever
+     * worker acquires them.
+     */
+    static void generate(SudokuOutput output, long count, long seed, int size, int threads, int maxClues,
+        Difficulty difficulty) throws InterruptedException
+    {
+        final var writer = new SudokuResultWriter(output, true, SudokuResultWriter.DEFAULT_WINDOW, GAMES_PER_BATCH, size);
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; t++)
+        {
+            workers[t] = new Thread(() -> {
+                var generator = new SudokuGenerator(size, maxClues, difficulty);
+                try {
+                    while(!failed.get())
+                    {
+                        //sequence numbers come in order, so the first batch past the end stops every worker
+                        SudokuBatch batch = writer.acquireBatch();
+                        final long first = batch.sequence*GAMES_PER_BATCH;
+                        batch.size = (int) Math.max(0, Math.min(GAMES_PER_BATCH, count - first));
+
+                        try {
+                            for(int i = 0; i < batch.size; i++)
+                                generator.generate(puzzleSeed(seed, first + i), batch.boards[i]);
+                        }
+                        catch(RuntimeException e) {
+                            failed.set(true);
+                            throw e;
+                        }
+                        finally {
+                            writer.completed(batch);
+                        }
+
+                        if(batch.size < GAMES_PER_BATCH)
+                            break;
+                    }
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "sudoku-generator-" + t);
+            workers[t].start();
+        }
+
+        for(Thread worker : workers)
+            worker.join();
+        writer.close();
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.Arrays;
+
+/**
+ * Layout of an N x N board with sqrt(N) x sqrt(N) regions, from 4x4 up to
+ * 36x36, shared by every game of that size. Units are numbered rows first,
+ * then columns, then regions; peers are precomputed so propagation never
+ * rescans whole units.
+ *
+ * Boards up to 9x9 use the symbols 1..9, larger ones 0..9 followed by A..Z.
+ * Any other character ('.', or '0' on small boards) is a free cell.
+ */
+final class SudokuGeometry {
+
+    static final int MIN_BOX_SIZE = 2;
+    static final int MAX_BOX_SIZE = 6;
+
+    private static final String SMALL_SYMBOLS = "123456789";
+    private static final String LARGE_SYMBOLS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private static final SudokuGeometry[] BY_BOX_SIZE = new SudokuGeometry[MAX_BOX_SIZE + 1];
+    static {
+        for(int b = MIN_BOX_SIZE; b <= MAX_BOX_SIZE; b++)
+            BY_BOX_SIZE[b] = new SudokuGeometry(b);
+    }
+
+    final int boxSize;
+    final int size;
+    final int nCells;
+    final long allNumbers;
+
+    final int[] rowOf;
+    final int[] columnOf;
+    final int[] regionOf;
+
+    //cells of every unit, and the distinct cells sharing a unit with every cell
+    final int[][] units;
+    final int[][] peers;
+
+    private final String symbols;
+    private final byte[] numberOfSymbol = new byte[128];
+
+    private SudokuGeometry(int boxSize)
+    {
+        this.boxSize = boxSize;
+        this.size = boxSize*boxSize;
+        this.nCells = size*size;
+        this.allNumbers = size == 64 ? -1L : (1L << size) - 1;
+
+        rowOf = new int[nCells];
+        columnOf = new int[nCells];
+        regionOf = new int[nCells];
+        units = new int[3*size][size];
+
+        int[] unitFill = new int[3*size];
+        for(int i = 0; i < nCells; i++)
+        {
+            final int r = i / size;
+            final int c = i % size;
+            rowOf[i] = r;
+            columnOf[i] = c;
+            regionOf[i] = (r/boxSize)*boxSize + c/boxSize;
+
+            units[r][unitFill[r]++] = i;
+            units[size + c][unitFill[size + c]++] = i;
+            units[2*size + regionOf[i]][unitFill[2*size + regionOf[i]]++] = i;
+        }
+
+        //row and column peers, plus the region peers outside that row and column
+        final int nPeers = 2*(size - 1) + (boxSize - 1)*(boxSize - 1);
+        peers = new int[nCells][nPeers];
+        for(int i = 0; i < nCells; i++)
+        {
+            int p = 0;
+            for(int j : units[rowOf[i]])
+                if(j != i) peers[i][p++] = j;
+            for(int j : units[size + columnOf[i]])
+                if(j != i) peers[i][p++] = j;
+            for(int j : units[2*size + regionOf[i]])
+                if(rowOf[j] != rowOf[i] && columnOf[j] != columnOf[i]) peers[i][p++] = j;
+            assert p == nPeers;
+        }
+
+        symbols = size <= SMALL_SYMBOLS.length() ? SMALL_SYMBOLS : LARGE_SYMBOLS;
+        Arrays.fill(numberOfSymbol, (byte) SudokuCell.FREE_CELL);
+        for(int n = 0; n < size; n++)
+        {
+            final char symbol = symbols.charAt(n);
+            numberOfSymbol[symbol] = (byte) n;
+            numberOfSymbol[Character.toLowerCase(symbol)] = (byte) n;
+        }
+    }
+
+    static boolean isValidSize(int size)
+    {
+        int boxSize = (int) Math.round(Math.sqrt(size));
+        return boxSize*boxSize == size && boxSize >= MIN_BOX_SIZE && boxSize <= MAX_BOX_SIZE;
+    }
+
+    static SudokuGeometry of(int size)
+    {
+        if(!isValidSize(size))
+            throw new IllegalArgumentException("Unsupported board size: " + size);
+
+        return BY_BOX_SIZE[(int) Math.round(Math.sqrt(size))];
+    }
+
+    int row(int unit)
+    {
+        return unit;
+    }
+
+    int column(int unit)
+    {
+        return size + unit;
+    }
+
+    int region(int unit)
+    {
+        return 2*size + unit;
+    }
+
+    //number 0..size-1 of a board symbol, FREE_CELL for anything else
+    int toNumber(char symbol)
+    {
+        return symbol < numberOfSymbol.length ? numberOfSymbol[symbol] : SudokuCell.FREE_CELL;
+    }
+
+    char toSymbol(int number)
+    {
+        return symbols.charAt(number);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Whole board kernels of the sweep solver, over int arrays holding one bit
+ * per number: placed numbers, candidates and unit masks. Every kernel
+ * handles all the cells or all the units of a board in one call, so an
+ * implementation can process as many of them at once as its lanes hold.
+ *
+ * Arrays are sized with {@link #cellCapacity} and {@link #unitCapacity},
+ * which pad them to whole vectors; entries past the board are scratch.
+ *
+ * The vector kernels need the jdk.incubator.vector module, both to compile
+ * vector/SudokuVectorLanes.java and to run:
+ *   javac -d bin *.java
+ *   javac --add-modules jdk.incubator.vector -cp bin -d bin vector/*.java
+ *   java --add-modules jdk.incubator.vector -cp bin Sudoku --engine=sweep ...
+ * Without the module, or without that class, {@link #of} falls back to the
+ * scalar kernels.
+ */
+interface SudokuLanes {
+
+    //multiple of every vector length in ints, up to 512 bit vectors
+    int PADDING = 16;
+
+    SudokuGeometry getGeometry();
+
+    //"vector (8 lanes)", "scalar"
+    String describe();
+
+    default int cellCapacity()
+    {
+        return pad(getGeometry().nCells);
+    }
+
+    default int unitCapacity()
+    {
+        return pad(3*getGeometry().size);
+    }
+
+    /**
+     * For every unit, the numbers of cells present in at least one of its
+     * cells (once) and in at least two (twice).
+     */
+    void unitOccurrences(int[] cells, int[] once, int[] twice);
+
+    /**
+     * Computes the candidates of every free cell (placed 0) from the
+     * numbers of its units, 0 for placed cells, and places every free cell
+     * left with a single candidate. Returns how many cells it placed, or -1
+     * when a free cell has no candidate.
+     */
+    int sweep(int[] placed, int[] unitNumbers, int[] candidates);
+
+    //the number of candidates of every cell
+    void counts(int[] candidates, int[] counts);
+
+    static int pad(int n)
+    {
+        return (n + PADDING - 1)/PADDING*PADDING;
+    }
+
+    //the vector kernels when they can run here, the scalar ones otherwise
+    static SudokuLanes of(SudokuGeometry geometry)
+    {
+        final SudokuLanes vector = vector(geometry);
+        return vector != null ? vector : scalar(geometry);
+    }
+
+    static SudokuLanes scalar(SudokuGeometry geometry)
+    {
+        return new SudokuScalarLanes(geometry);
+    }
+
+    //null when the module or the class is missing
+    static SudokuLanes vector(SudokuGeometry geometry)
+    {
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return null;
+
+        try {
+            return (SudokuLanes) Class.forName("SudokuVectorLanes")
+                .getDeclaredConstructor(SudokuGeometry.class)
+                .newInstance(geometry);
+        }
+        catch(ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+import java.util.Arrays;
+
+/**
+ * Solves many boards at once, one per lane, running the same propagation
+ * step on every lane in lockstep. Lanes are 16 bit fields of long words
+ * (SWAR), four boards per word, and state is laid out cell major and word
+ * minor (index cell*words + word), so one long operation advances four
+ * boards. Field-wise tests keep the top bit of every field free as a
+ * borrow guard, which leaves room for the 9 numbers of a 9x9 board.
+ *
+ * A step rebuilds the unit masks from the placed numbers, computes the
+ * candidates of every cell and places naked singles, then places the
+ * hidden singles of those candidates. A lane leaves as soon as its board
+ * is solved, contradicts itself or stops making progress. Boards that are
+ * not solved are handed whole to a {@link SudokuGame}, which backtracks,
+ * or reports why there is no solution, and the lane takes the next board.
+ * Boards are only written once their lane is done, so the fallback starts
+ * from the clues.
+ *
+ * Boards solved by singles alone, most of a typical bulk input, never
+ * leave the lanes.
+ *
+ * Past the deadline, or once cancelled, the lanes stop between steps and
+ * the boards still in them or not loaded yet are left with their clues.
+ * The fallback gets the same deadline and cancel.
+ */
+class SudokuLockstepSolver implements SudokuSolver {
+
+    public static final int MAX_SIZE = 9;
+    public static final int DEFAULT_LANES = 16;
+
+    //result of boards given up on the deadline or cancel
+    public static final long GIVEN_UP = -1;
+
+    private static final int FIELD_BITS = 16;
+    private static final int FIELDS = Long.SIZE/FIELD_BITS;
+    private static final long FIELD_MASK = (1L << FIELD_BITS) - 1;
+
+    //lowest and highest bit of every field
+    private static final long LOW = 0x0001_0001_0001_0001L;
+    private static final long HIGH = 0x8000_8000_8000_8000L;
+
+    private static final int EMPTY = -1;
+
+    private final SudokuGeometry geometry;
+    private final int size;
+    private final int nCells;
+    private final int nUnits;
+    private final int lanes;
+    private final int words;
+    private final long allNumbers;
+
+    //per cell and word: the placed number bits (0 for free cells), the candidates of free cells
+    private final long[] placed;
+    private final long[] candidates;
+
+    //per unit and word
+    private final long[] unitNumbers;
+    private final long[] once;
+    private final long[] twice;
+
+    //per word, for the last step: fields with a contradiction (top bit), placed numbers, free cells before it
+    private final long[] dead;
+    private final long[] progress;
+    private final long[] free;
+
+    //the board of every lane, EMPTY when idle
+    private final int[] boardOf;
+
+    private final SudokuGame fallback;
+    private final char[][][] single = new char[1][][];
+    private final long[] singleResult = new long[1];
+
+    private long steps = 0;
+    private long lockstepSolved = 0;
+    private long fallbacks = 0;
+
+    private volatile long deadline = NO_DEADLINE;
+    private volatile boolean cancelled = false;
+
+    public SudokuLockstepSolver(int size)
+    {
+        this(size, DEFAULT_LANES);
+    }
+
+    //lanes is rounded up to whole words
+    public SudokuLockstepSolver(int size, int lanes)
+    {
+        if(size > MAX_SIZE)
+            throw new IllegalArgumentException("The lockstep solver supports boards up to " + MAX_SIZE + "x" + MAX_SIZE);
+
+        this.geometry = SudokuGeometry.of(size);
+        this.size = size;
+        this.nCells = geometry.nCells;
+        this.nUnits = 3*size;
+        this.words = (Math.max(1, lanes) + FIELDS - 1)/FIELDS;
+        this.lanes = words*FIELDS;
+        this.allNumbers = geometry.allNumbers*LOW;
+
+        placed = new long[nCells*words];
+        candidates = new long[nCells*words];
+        unitNumbers = new long[nUnits*words];
+        once = new long[nUnits*words];
+        twice = new long[nUnits*words];
+        dead = new long[words];
+        progress = new long[words];
+        free = new long[words];
+        boardOf = new int[this.lanes];
+
+        fallback = new SudokuGame(size, false);
+    }
+
+    //propagation steps run, boards solved in the lanes, and boards handed to the fallback
+    public long getSteps()
+    {
+        return steps;
+    }
+
+    public long getLockstepSolved()
+    {
+        return lockstepSolved;
+    }
+
+    public long getFallbacks()
+    {
+        return fallbacks;
+    }
+
+    @Override
+    public void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+        fallback.setDeadline(deadline);
+    }
+
+    //stops the running solveAll at its next step, and its fallback
+    @Override
+    public void cancel()
+    {
+        cancelled = true;
+        fallback.cancel();
+    }
+
+    @Override
+    public boolean isBudgetExceeded()
+    {
+        return singleResult[0] == GIVEN_UP;
+    }
+
+    @Override
+    public boolean solve(char[][] board)
+    {
+        single[0] = board;
+        solveAll(single, 1, singleResult);
+        single[0] = null;
+        return singleResult[0] == 1;
+    }
+
+    /**
+     * Solves the first count boards in place, setting their result to 1
+     * when solved, 0 when they have no solution and GIVEN_UP when the
+     * deadline or a cancel came first.
+     */
+    public void solveAll(char[][][] boards, int count, long[] results)
+    {
+        //cleared before the deadline is read, see SudokuGame.reset
+        cancelled = false;
+        final long deadline = this.deadline;
+
+        int next = 0;
+        int active = 0;
+        Arrays.fill(boardOf, EMPTY);
+        for(int lane = 0; lane < lanes; lane++)
+        {
+            next = fill(lane, boards, count, next, results);
+            if(boardOf[lane] != EMPTY)
+                active++;
+        }
+
+        while(active > 0)
+        {
+            if(cancelled || (deadline != NO_DEADLINE && System.nanoTime() - deadline > 0))
+            {
+                for(int lane = 0; lane < lanes; lane++)
+                    if(boardOf[lane] != EMPTY)
+                        results[boardOf[lane]] = GIVEN_UP;
+                for(int b = next; b < count; b++)
+                    results[b] = GIVEN_UP;
+                return;
+            }
+
+            step();
+
+            for(int lane = 0; lane < lanes; lane++)
+            {
+                final int b = boardOf[lane];
+                if(b == EMPTY)
+                    continue;
+
+                final int w = lane/FIELDS, shift = lane%FIELDS*FIELD_BITS;
+                final boolean contradiction = (dead[w] >>> shift & FIELD_MASK) != 0;
+                if(!contradiction && (free[w] >>> shift & FIELD_MASK) == 0)
+                {
+                    store(lane, boards[b]);
+                    results[b] = 1;
+                    lockstepSolved++;
+                }
+                else if(contradiction || (progress[w] >>> shift & FIELD_MASK) == 0)
+                {
+                    results[b] = fallbackSolve(boards[b]);
+                    fallbacks++;
+                }
+                else
+                    continue;
+
+                boardOf[lane] = EMPTY;
+                next = fill(lane, boards, count, next, results);
+                if(boardOf[lane] == EMPTY)
+                    active--;
+            }
+        }
+    }
+
+    //loads the next loadable board into lane, returning the index after it
+    private int fill(int lane, char[][][] boards, int count, int next, long[] results)
+    {
+        while(next < count)
+        {
+            final int b = next++;
+            if(load(lane, boards[b]))
+            {
+                boardOf[lane] = b;
+                break;
+            }
+
+            //malformed boards get the game's checks and messages
+            results[b] = fallbackSolve(boards[b]);
+            fallbacks++;
+        }
+        return next;
+    }
+
+    private long fallbackSolve(char[][] board)
+    {
+        if(cancelled)
+            return GIVEN_UP;
+        if(fallback.solve(board))
+            return 1;
+        return fallback.isBudgetExceeded() ? GIVEN_UP : 0;
+    }
+
+    private boolean load(int lane, char[][] board)
+    {
+        if(board.length != size)
+            return false;
+        for(char[] row : board)
+            if(row.length != size)
+                return false;
+
+        final int w = lane/FIELDS, shift = lane%FIELDS*FIELD_BITS;
+        final long keep = ~(FIELD_MASK << shift);
+        for(int r = 0, cell = 0; r < size; r++)
+            for(int c = 0; c < size; c++, cell++)
+            {
+                final int n = geometry.toNumber(board[r][c]);
+                final long bit = n == SudokuCell.FREE_CELL ? 0 : 1L << n;
+                final int i = cell*words + w;
+                placed[i] = placed[i] & keep | bit << shift;
+            }
+        return true;
+    }
+
+    private void store(int lane, char[][] board)
+    {
+        final int w = lane/FIELDS, shift = lane%FIELDS*FIELD_BITS;
+        for(int r = 0, cell = 0; r < size; r++)
+            for(int c = 0; c < size; c++, cell++)
+            {
+                final long bit = placed[cell*words + w] >>> shift & FIELD_MASK;
+                board[r][c] = geometry.toSymbol(Long.numberOfTrailingZeros(bit));
+            }
+    }
+
+    //top bit of every field of x that is not 0
+    private static long nonZero(long x)
+    {
+        return ((x | HIGH) - LOW) & HIGH;
+    }
+
+    private static long isZero(long x)
+    {
+        return ~((x | HIGH) - LOW) & HIGH;
+    }
+
+    //every bit below the top one of the fields flagged by their top bit
+    private static long spread(long flags)
+    {
+        return flags - (flags >>> (FIELD_BITS - 1));
+    }
+
+    //the fields of x less one, 0 fields giving all ones below the top bit
+    private static long decrement(long x)
+    {
+        return ((x | HIGH) - LOW) & ~HIGH;
+    }
+
+    //one propagation step on every lane, idle ones included
+    private void step()
+    {
+        steps++;
+        Arrays.fill(dead, 0);
+        Arrays.fill(progress, 0);
+        Arrays.fill(free, 0);
+
+        //a number twice in a unit: two singles took the same number
+        unitOccurrences(placed, unitNumbers, twice);
+        for(int u = 0; u < nUnits; u++)
+        {
+            final int base = u*words;
+            for(int w = 0; w < words; w++)
+                dead[w] |= nonZero(twice[base + w]);
+        }
+
+        //candidates, naked singles, and cells left with no candidate or given two numbers
+        for(int cell = 0; cell < nCells; cell++)
+        {
+            final int base = cell*words;
+            final int row = geometry.rowOf[cell]*words;
+            final int column = (size + geometry.columnOf[cell])*words;
+            final int region = (2*size + geometry.regionOf[cell])*words;
+
+            for(int w = 0; w < words; w++)
+            {
+                final long p = placed[base + w];
+                final long isFree = isZero(p);
+                final long c = ~(unitNumbers[row + w] | unitNumbers[column + w] | unitNumbers[region + w])
+                    & allNumbers & spread(isFree);
+                final long naked = c & spread(isZero(c & decrement(c)));
+
+                candidates[base + w] = c;
+                dead[w] |= (isZero(c) & isFree) | nonZero(p & decrement(p));
+                free[w] += isFree >>> (FIELD_BITS - 1);
+                placed[base + w] = p | naked;
+                progress[w] |= naked;
+            }
+        }
+
+        //hidden singles, kept in once, and numbers with no place left in a unit
+        unitOccurrences(candidates, once, twice);
+        for(int u = 0; u < nUnits; u++)
+        {
+            final int base = u*words;
+            for(int w = 0; w < words; w++)
+            {
+                dead[w] |= nonZero(allNumbers & ~(unitNumbers[base + w] | once[base + w]));
+                once[base + w] &= ~twice[base + w];
+            }
+        }
+
+        //a cell that is the only place of two numbers fails the next step
+        for(int u = 0; u < nUnits; u++)
+        {
+            final int hidden = u*words;
+            for(int cell : geometry.units[u])
+            {
+                final int base = cell*words;
+                for(int w = 0; w < words; w++)
+                {
+                    final long h = candidates[base + w] & once[hidden + w];
+                    placed[base + w] |= h;
+                    progress[w] |= h;
+                }
+            }
+        }
+    }
+
+    //per unit and word, the numbers of cells present at least once and at least twice
+    private void unitOccurrences(long[] cells, long[] seen, long[] repeated)
+    {
+        Arrays.fill(seen, 0);
+        Arrays.fill(repeated, 0);
+        for(int u = 0; u < nUnits; u++)
+        {
+            final int base = u*words;
+            for(int cell : geometry.units[u])
+            {
+                final int at = cell*words;
+                for(int w = 0; w < words; w++)
+                {
+                    final long v = cells[at + w];
+                    repeated[base + w] |= seen[base + w] & v;
+                    seen[base + w] |= v;
+                }
+            }
+        }
+    }
+}
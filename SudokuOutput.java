@@ -0,0 +1,16 @@
+import java.io.IOException;
+
+/**
+ * Where the result writer sends solved boards, in input order unless the
+ * pipeline runs unordered. Only ever called from the writer thread.
+ */
+interface SudokuOutput {
+
+    //boards written outside the pipeline, such as converted ones
+    long NO_RESULT = 0;
+
+    //result: what the solve stage reported for the board, see SudokuBatch
+    void write(char[][] board, long result) throws IOException;
+
+    void flush() throws IOException;
+}
@@ -0,0 +1,292 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte level puzzle parser. Files are memory mapped, other streams are read
+ * through a large direct buffer; cells are written straight into the
+ * caller's board without building intermediate Strings.
+ *
+ * Accepts the same layouts as {@link SudokuGame#parseSudokuBoard}: one row
+ * per line with any of the separators below, '#' comment lines, lines too
+ * short to be a row before a puzzle such as "Grid 01" headers, and also
+ * one puzzle per line (81 cells on a single line). Larger boards use the
+ * same layouts with their own row length, e.g. 256 cells per 16x16 puzzle.
+ */
+class SudokuParser implements SudokuReader {
+
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+    private static final long MAP_WINDOW_SIZE = 1L << 28;
+
+    private static final boolean[] SEPARATOR = new boolean[256];
+    static {
+        for(char c : " \t\r\f\u000b,;{}[]'\"|".toCharArray())
+            SEPARATOR[c] = true;
+    }
+
+    private final int size;
+    private final int nCells;
+
+    private final FileChannel file;
+    private final ReadableByteChannel stream;
+    private ByteBuffer buffer;
+
+    //newlines consumed so far, and the line the last puzzle started on
+    private long lines = 0;
+    private long puzzleLine = 0;
+
+    //first malformed row of the last puzzle: its line, row and cell count, -1 cells when the input ended there
+    private long shapeLine = 0;
+    private int shapeRow = -1;
+    private int shapeCells = 0;
+
+    //mapped files: offset of the current window and total size
+    private long windowStart = 0;
+    private final long fileSize;
+
+    private SudokuParser(FileChannel file, int size) throws IOException
+    {
+        this.size = size;
+        this.nCells = size*size;
+        this.file = file;
+        this.stream = null;
+        this.fileSize = file.size();
+        this.buffer = mapWindow(0);
+    }
+
+    private SudokuParser(InputStream in, int size)
+    {
+        this.size = size;
+        this.nCells = size*size;
+        this.file = null;
+        this.stream = Channels.newChannel(in);
+        this.fileSize = -1;
+        this.buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        this.buffer.flip();
+    }
+
+    public static SudokuParser open(Path path) throws IOException
+    {
+        return open(path, SudokuGame.SUDOKU_SIZE);
+    }
+
+    public static SudokuParser open(InputStream in)
+    {
+        return open(in, SudokuGame.SUDOKU_SIZE);
+    }
+
+    public static SudokuParser open(Path path, int size) throws IOException
+    {
+        return new SudokuParser(FileChannel.open(path, StandardOpenOption.READ), size);
+    }
+
+    public static SudokuParser open(InputStream in, int size)
+    {
+        return new SudokuParser(in, size);
+    }
+
+    private MappedByteBuffer mapWindow(long start) throws IOException
+    {
+        long length = Math.min(MAP_WINDOW_SIZE, fileSize - start);
+        return file.map(FileChannel.MapMode.READ_ONLY, start, length);
+    }
+
+    //makes at least one byte available, returns false on end of input
+    private boolean fill() throws IOException
+    {
+        if(buffer.hasRemaining())
+            return true;
+
+        if(file != null)
+        {
+            windowStart += buffer.limit();
+            if(windowStart >= fileSize)
+                return false;
+            buffer = mapWindow(windowStart);
+            return true;
+        }
+
+        buffer.clear();
+        int read;
+        do {
+            read = stream.read(buffer);
+        } while(read == 0);
+        buffer.flip();
+
+        return read > 0;
+    }
+
+    private static boolean isCell(int b)
+    {
+        return !SEPARATOR[b] && b != '\n';
+    }
+
+    public char[][] next() throws IOException
+    {
+        char[][] board = new char[size][size];
+        return next(board) ? board : null;
+    }
+
+    /**
+     * Parses the next puzzle into {@code board}.
+     * Returns false when the input ends before a puzzle starts.
+     *
+     * Lines with fewer cells than a row are skipped until the first row.
+     * From there every line with cells is a row, so a row of the wrong
+     * length or a puzzle cut short by the end of input still ends the
+     * puzzle where it should, and the next one is read from its own first
+     * line. Such a puzzle is returned incomplete, see {@link #checkShape}.
+     * A first line with more than two rows of cells, and not a whole
+     * puzzle, is a malformed puzzle on one line.
+     */
+    @Override
+    public boolean next(char[][] board) throws IOException
+    {
+        int row = 0;
+        shapeRow = -1;
+
+        while(row < size)
+        {
+            if(!fill())
+            {
+                if(row == 0)
+                    return false;
+
+                shapeError(lines, row, -1);
+                return true;
+            }
+
+            //comment and empty lines do not start the puzzle
+            if(row == 0)
+            {
+                puzzleLine = lines + 1;
+                if(parseFullLine(board))
+                    return true;
+            }
+
+            final long line = lines + 1;
+            int cells = parseLine(board, row);
+            //headers such as "Grid 01" before the puzzle
+            if(cells == 0 || row == 0 && cells < size)
+                continue;
+
+            if(row == 0 && (cells == nCells || cells > 2*size))
+            {
+                if(cells != nCells)
+                    shapeError(line, 0, cells);
+                return true;
+            }
+            if(cells != size)
+                shapeError(line, row, cells);
+            row++;
+        }
+
+        return true;
+    }
+
+    //keeps the first error of the puzzle
+    private void shapeError(long line, int row, int cells)
+    {
+        if(shapeRow >= 0)
+            return;
+        shapeLine = line;
+        shapeRow = row;
+        shapeCells = cells;
+    }
+
+    @Override
+    public SudokuReject checkShape(long index)
+    {
+        return shapeRow < 0 ? null
+            : new SudokuReject(index, shapeLine, SudokuReject.Reason.SHAPE, shapeRow, shapeCells, ' ');
+    }
+
+    //fast path: a line with exactly size*size cell characters and no separators
+    private boolean parseFullLine(char[][] board)
+    {
+        final int p = buffer.position();
+        if(buffer.limit() - p <= nCells)
+            return false;
+
+        final byte end = buffer.get(p + nCells);
+        if(end != '\n' && end != '\r')
+            return false;
+
+        for(int i = 0; i < nCells; i++)
+        {
+            final int b = buffer.get(p + i) & 0xff;
+            if(b == '#' || !isCell(b))
+                return false;
+        }
+
+        for(int r = 0, i = p; r < size; r++)
+            for(int c = 0; c < size; c++, i++)
+                board[r][c] = (char) (buffer.get(i) & 0xff);
+
+        buffer.position(p + nCells);
+        skipLine();
+        return true;
+    }
+
+    //writes the cells of one line from board[row][0] on, returns their number
+    private int parseLine(char[][] board, int row) throws IOException
+    {
+        int cells = 0;
+        boolean comment = false;
+
+        while(fill())
+        {
+            final int b = buffer.get() & 0xff;
+            if(b == '\n')
+            {
+                lines++;
+                break;
+            }
+            if(comment || SEPARATOR[b])
+                continue;
+            if(b == '#' && cells == 0)
+            {
+                comment = true;
+                continue;
+            }
+
+            final int r = row + cells/size;
+            if(r < size && (r == row || row == 0))
+                board[r][cells%size] = (char) b;
+            cells++;
+        }
+
+        return comment ? 0 : cells;
+    }
+
+    private void skipLine()
+    {
+        while(buffer.hasRemaining())
+            if(buffer.get() == '\n')
+            {
+                lines++;
+                return;
+            }
+    }
+
+    @Override
+    public long getLine()
+    {
+        return puzzleLine;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if(file != null)
+            file.close();
+        else
+            stream.close();
+    }
+}
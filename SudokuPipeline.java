@@ -0,0 +1,515 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Batch runner: reader (calling thread) -> solver threads -> result writer.
+ * The stages are joined by bounded queues, so a fast producer blocks
+ * instead of growing memory and a slow one just leaves the solvers idle.
+ *
+ * Batches are sized by predicted cost rather than board count: the reader
+ * adds boards until their estimated solve time, learnt per clue count by a
+ * {@link SudokuCostModel}, reaches TARGET_BATCH_NANOS. Hard boards travel
+ * alone and easy ones in large groups. With the COST schedule solvers take
+ * the most expensive batch queued first, so a hard board found late does
+ * not run alone at the end; the writer window bounds how far ahead that is.
+ */
+class SudokuPipeline {
+
+    public enum Schedule { FIFO, COST }
+
+    public static final int MAX_GAMES_PER_BATCH = 64;
+
+    private static final long TARGET_BATCH_NANOS = 1_000_000;
+
+    private static final long STATS_INTERVAL_MILLIS = 1000;
+
+    private static final SudokuBatch END_OF_INPUT = new SudokuBatch(0, 0);
+    static {
+        END_OF_INPUT.cost = Long.MIN_VALUE;
+    }
+
+    private final int threads;
+    private final Schedule schedule;
+    private final int gamesPerBatch;
+    private final Supplier<SudokuSolver> solverFactory;
+    private final boolean reportStats;
+    private final SudokuCostModel costModel;
+
+    private final BlockingQueue<SudokuBatch> solveQueue;
+    private final SudokuResultWriter writer;
+
+    //boards failing validation never reach a batch: they go to the sink and are counted by reason
+    private SudokuValidator validator = null;
+    private Consumer<SudokuReject> rejects = null;
+    private final long[] rejectCounts = new long[SudokuReject.Reason.values().length];
+    private long rejected = 0;
+
+    //sampled each time the parser hands over a batch; puzzles counts every puzzle read
+    private long batches = 0;
+    private long puzzles = 0;
+    private long solveQueueDepthSum = 0;
+    private int solveQueueDepthMax = 0;
+    private long writerDepthSum = 0;
+    private int writerDepthMax = 0;
+
+    //counting mode: boards by number of solutions, and the input positions of those not unique
+    private long solutionLimit = 0;
+    private final long[] solutionCounts = new long[4];
+    private final List<Long> notUnique = new ArrayList<>();
+    private static final int NONE = 0, UNIQUE = 1, MULTIPLE = 2, AT_LIMIT = 3;
+    private static final int PUZZLES_SHOWN = 20;
+
+    //no board is searched past the deadline or once cancelled; input positions of the boards it or their own budget left unsolved
+    private long deadline = SudokuSolver.NO_DEADLINE;
+    private volatile boolean cancelled = false;
+    private final List<SudokuSolver> activeSolvers = new ArrayList<>();
+    private final List<Long> overBudget = new ArrayList<>();
+
+    //search counters of every puzzle solved by a SudokuGame, and of the slowest one
+    private final SudokuSearchStats searchStats = new SudokuSearchStats();
+    private final SudokuSearchStats slowestStats = new SudokuSearchStats();
+    private long slowestPuzzle = -1;
+
+    public SudokuPipeline(int threads, Supplier<SudokuSolver> solverFactory, boolean reportStats, SudokuResultWriter writer)
+    {
+        this(threads, Schedule.COST, 0, solverFactory, reportStats, writer);
+    }
+
+    //gamesPerBatch 0 sizes batches by predicted cost, otherwise every batch holds that many boards
+    public SudokuPipeline(int threads, Schedule schedule, int gamesPerBatch, Supplier<SudokuSolver> solverFactory,
+        boolean reportStats, SudokuResultWriter writer)
+    {
+        assert threads > 0;
+        assert gamesPerBatch >= 0;
+        this.threads = threads;
+        this.schedule = schedule;
+        this.gamesPerBatch = gamesPerBatch;
+        this.solverFactory = solverFactory;
+        this.reportStats = reportStats;
+        this.writer = writer;
+
+        //until boards are timed, every board is guessed to fill a batch alone
+        this.costModel = new SudokuCostModel(writer.getBoardSize(), TARGET_BATCH_NANOS);
+
+        //the writer window already bounds the batches in flight
+        this.solveQueue = schedule == Schedule.COST
+            ? new PriorityBlockingQueue<>(2*threads, SudokuPipeline::compareCost)
+            : new ArrayBlockingQueue<>(2*threads);
+    }
+
+    /**
+     * Counts the solutions of every board up to limit instead of stopping
+     * at the first one, e.g. 2 to check that puzzles are unique. Boards are
+     * written with their first solution, or their clues when they have none.
+     * The solvers must be SudokuGames.
+     */
+    public void setSolutionLimit(long limit)
+    {
+        assert limit > 0;
+        this.solutionLimit = limit;
+    }
+
+    /**
+     * Checks every board with a {@link SudokuValidator} as it is read.
+     * Rejected boards are handed to the sink, on the reading thread, and
+     * are neither solved nor written.
+     */
+    public void setValidation(Consumer<SudokuReject> sink)
+    {
+        this.validator = new SudokuValidator(writer.getBoardSize());
+        this.rejects = sink;
+    }
+
+    /**
+     * Stops solving at deadline, a System.nanoTime(): the solvers stop
+     * searching, and boards not started by then are written unsolved.
+     * Either way they are reported as over budget. Set before run.
+     */
+    public void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Gives up the run from any thread, as if the deadline had passed:
+     * running solves stop and the boards left are written unsolved. run
+     * also calls it when reading fails, then rethrows the reader's exception
+     * once the boards read so far are written.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+
+        //the deadline catches a solver between two boards, cancel the solve it is running
+        final long now = System.nanoTime();
+        synchronized(activeSolvers) {
+            for(SudokuSolver solver : activeSolvers)
+            {
+                solver.setDeadline(now);
+                solver.cancel();
+            }
+        }
+    }
+
+    //boards left unsolved by their search budget or the deadline, once run returns
+    public synchronized long getBudgetExceededCount()
+    {
+        return overBudget.size();
+    }
+
+    //boards turned away by validation, once run returns
+    public long getRejectedCount()
+    {
+        return rejected;
+    }
+
+    //boards found with no solution, or more than one when the limit allows telling, once run returns
+    public synchronized long getNotUniqueCount()
+    {
+        return solutionCounts[NONE] + (solutionLimit > 1 ? solutionCounts[MULTIPLE] + solutionCounts[AT_LIMIT] : 0);
+    }
+
+    //most expensive first, then in input order; END_OF_INPUT comes after every batch
+    private static int compareCost(SudokuBatch a, SudokuBatch b)
+    {
+        final int byCost = Long.compare(b.cost, a.cost);
+        return byCost != 0 ? byCost : Long.compare(a.sequence, b.sequence);
+    }
+
+    public void run(SudokuReader reader) throws IOException, InterruptedException
+    {
+        Thread[] solvers = new Thread[threads];
+        for(int t = 0; t < threads; t++)
+        {
+            solvers[t] = new Thread(this::solveLoop, "sudoku-solver-" + t);
+            solvers[t].start();
+        }
+
+        Thread reporter = null;
+        if(reportStats)
+        {
+            reporter = new Thread(this::reportLoop, "sudoku-stats");
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+
+        boolean finished = false;
+        try {
+            parseLoop(reader);
+            finished = true;
+        }
+        finally {
+            if(!finished)
+                cancel();
+            for(int t = 0; t < threads; t++)
+                solveQueue.put(END_OF_INPUT);
+            for(Thread solver : solvers)
+                solver.join();
+            writer.close();
+
+            if(reporter != null)
+                reporter.interrupt();
+        }
+
+        if(rejected > 0)
+            printRejectCounts();
+        if(!overBudget.isEmpty())
+            printOverBudget();
+        if(solutionLimit > 0)
+            printSolutionCounts();
+        if(reportStats)
+            printStats();
+    }
+
+    private void parseLoop(SudokuReader reader) throws IOException, InterruptedException
+    {
+        boolean endOfInput = false;
+        while(!endOfInput)
+        {
+            //both acquireBatch and put block while the next stage is full
+            SudokuBatch batch = writer.acquireBatch();
+
+            //the writer waits for every sequence number acquired, so the batch goes on even when reading fails
+            try {
+                endOfInput = fillBatch(reader, batch);
+            }
+            finally {
+                if(batch.size == 0)
+                    writer.completed(batch);
+                else
+                {
+                    sampleQueueDepths();
+                    solveQueue.put(batch);
+                }
+            }
+        }
+    }
+
+    //reads boards into batch until it is full, returns true at the end of input
+    private boolean fillBatch(SudokuReader reader, SudokuBatch batch) throws IOException
+    {
+        final int capacity = gamesPerBatch > 0 ? Math.min(gamesPerBatch, batch.boards.length) : batch.boards.length;
+
+        batch.cost = 0;
+        while(batch.size < capacity && (gamesPerBatch > 0 || batch.cost < TARGET_BATCH_NANOS))
+        {
+            final char[][] board = batch.boards[batch.size];
+            if(!reader.next(board))
+                return true;
+
+            final long index = puzzles++;
+            if(validator != null)
+            {
+                SudokuReject reject = reader.checkShape(index);
+                if(reject == null)
+                    reject = validator.validate(board, index, reader.getLine());
+                if(reject != null)
+                {
+                    rejectCounts[reject.reason.ordinal()]++;
+                    rejected++;
+                    rejects.accept(reject);
+                    continue;
+                }
+            }
+
+            final int clues = costModel.countClues(board);
+            batch.indexes[batch.size] = index;
+            batch.clues[batch.size++] = clues;
+            batch.cost += costModel.estimate(clues);
+        }
+        return false;
+    }
+
+    private void solveLoop()
+    {
+        //one solver per thread, reused for every board
+        SudokuSolver solver = solverFactory.get();
+        SudokuGame game = solver instanceof SudokuGame ? (SudokuGame) solver : null;
+        SudokuRater rater = solver instanceof SudokuRater ? (SudokuRater) solver : null;
+        SudokuLockstepSolver lockstep = solver instanceof SudokuLockstepSolver ? (SudokuLockstepSolver) solver : null;
+        SudokuSearchStats stats = game != null ? game.getStats() : null;
+        assert solutionLimit == 0 || game != null;
+
+        solver.setDeadline(deadline);
+        synchronized(activeSolvers) {
+            activeSolvers.add(solver);
+        }
+
+        long[] counts = new long[solutionCounts.length];
+        List<Long> notUnique = new ArrayList<>();
+        List<Long> overBudget = new ArrayList<>();
+
+        //merged into the pipeline totals once the thread is done
+        SudokuSearchStats totals = new SudokuSearchStats();
+        SudokuSearchStats slowest = new SudokuSearchStats();
+        long slowestPuzzle = -1;
+
+        try {
+            SudokuBatch batch;
+            while((batch = solveQueue.take()) != END_OF_INPUT)
+            {
+                try {
+                    //the whole batch at once, its time shared evenly by the boards
+                    if(lockstep != null && solutionLimit == 0 && !isPastDeadline())
+                    {
+                        final long start = System.nanoTime();
+                        lockstep.solveAll(batch.boards, batch.size, batch.results);
+                        final long nanos = (System.nanoTime() - start)/Math.max(1, batch.size);
+                        for(int i = 0; i < batch.size; i++)
+                        {
+                            if(batch.results[i] == SudokuLockstepSolver.GIVEN_UP)
+                            {
+                                batch.results[i] = 0;
+                                overBudget.add(batch.indexes[i]);
+                                continue;
+                            }
+                            costModel.record(batch.clues[i], nanos);
+                        }
+                        continue;
+                    }
+
+                    for(int i = 0; i < batch.size; i++)
+                    {
+                        //written with their clues alone
+                        if(isPastDeadline())
+                        {
+                            batch.results[i] = 0;
+                            overBudget.add(batch.indexes[i]);
+                            continue;
+                        }
+
+                        final long start = System.nanoTime();
+                        if(solutionLimit > 0)
+                        {
+                            final long found = game.countSolutions(batch.boards[i], solutionLimit);
+                            batch.results[i] = found;
+                            if(solver.isBudgetExceeded())
+                            {
+                                overBudget.add(batch.indexes[i]);
+                                continue;
+                            }
+
+                            final int kind = found == 0 ? NONE
+                                : found >= solutionLimit ? AT_LIMIT
+                                : found == 1 ? UNIQUE : MULTIPLE;
+                            counts[kind]++;
+                            if(kind != UNIQUE && solutionLimit > 1)
+                                notUnique.add(batch.indexes[i]);
+                        }
+                        else
+                        {
+                            final boolean solved = solver.solve(batch.boards[i]);
+                            batch.results[i] = rater != null ? rater.getRating() : solved ? 1 : 0;
+                            if(solver.isBudgetExceeded())
+                            {
+                                overBudget.add(batch.indexes[i]);
+                                continue;
+                            }
+                        }
+                        costModel.record(batch.clues[i], System.nanoTime() - start);
+
+                        if(reportStats && stats != null)
+                        {
+                            totals.add(stats);
+                            if(slowestPuzzle < 0 || stats.nanos > slowest.nanos)
+                            {
+                                slowest.reset();
+                                slowest.add(stats);
+                                slowestPuzzle = batch.indexes[i];
+                            }
+                        }
+                    }
+                }
+                finally {
+                    writer.completed(batch);
+                }
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            mergeSearchStats(totals, slowest, slowestPuzzle);
+            mergeSolutionCounts(counts, notUnique, overBudget);
+        }
+    }
+
+    private boolean isPastDeadline()
+    {
+        return cancelled || (deadline != SudokuSolver.NO_DEADLINE && System.nanoTime() - deadline > 0);
+    }
+
+    private synchronized void mergeSolutionCounts(long[] counts, List<Long> notUnique, List<Long> overBudget)
+    {
+        for(int i = 0; i < counts.length; i++)
+            solutionCounts[i] += counts[i];
+        this.notUnique.addAll(notUnique);
+        this.overBudget.addAll(overBudget);
+    }
+
+    private void printRejectCounts()
+    {
+        StringBuilder counts = new StringBuilder("rejected: ").append(rejected).append(" (");
+        for(SudokuReject.Reason reason : SudokuReject.Reason.values())
+        {
+            if(reason.ordinal() > 0)
+                counts.append(", ");
+            counts.append(rejectCounts[reason.ordinal()]).append(' ').append(reason.label());
+        }
+        System.err.println(counts.append(')'));
+    }
+
+    private synchronized void printSolutionCounts()
+    {
+        String counts = "solutions: " + solutionCounts[NONE] + " none";
+        if(solutionLimit > 1)
+            counts += ", " + solutionCounts[UNIQUE] + " unique";
+        if(solutionLimit > 2)
+            counts += ", " + solutionCounts[MULTIPLE] + " with 2 to " + (solutionLimit - 1);
+        counts += ", " + solutionCounts[AT_LIMIT] + " with at least " + solutionLimit;
+        System.err.println(counts);
+
+        if(!notUnique.isEmpty())
+            System.err.println(listPuzzles("not unique:", notUnique));
+    }
+
+    private synchronized void printOverBudget()
+    {
+        System.err.println(listPuzzles("unsolved: budget exceeded, " + overBudget.size() + " puzzles:", overBudget));
+    }
+
+    //the first input positions, numbered from 1
+    private static StringBuilder listPuzzles(String title, List<Long> indexes)
+    {
+        Collections.sort(indexes);
+        StringBuilder puzzles = new StringBuilder(title);
+        for(int i = 0; i < Math.min(PUZZLES_SHOWN, indexes.size()); i++)
+            puzzles.append(" #").append(indexes.get(i) + 1);
+        if(indexes.size() > PUZZLES_SHOWN)
+            puzzles.append(" ... (").append(indexes.size() - PUZZLES_SHOWN).append(" more)");
+        return puzzles;
+    }
+
+    private synchronized void mergeSearchStats(SudokuSearchStats totals, SudokuSearchStats slowest, long puzzle)
+    {
+        searchStats.add(totals);
+        if(puzzle >= 0 && (slowestPuzzle < 0 || slowest.nanos > slowestStats.nanos))
+        {
+            slowestStats.reset();
+            slowestStats.add(slowest);
+            slowestPuzzle = puzzle;
+        }
+    }
+
+    private synchronized void sampleQueueDepths()
+    {
+        int solveDepth = solveQueue.size();
+        int writerDepth = writer.getPendingCount();
+
+        batches++;
+        solveQueueDepthSum += solveDepth;
+        solveQueueDepthMax = Math.max(solveQueueDepthMax, solveDepth);
+        writerDepthSum += writerDepth;
+        writerDepthMax = Math.max(writerDepthMax, writerDepth);
+    }
+
+    private void reportLoop()
+    {
+        try {
+            while(true)
+            {
+                Thread.sleep(STATS_INTERVAL_MILLIS);
+                System.err.println(
+                    "queue depth: solve " + solveQueue.size()
+                    + ", write " + writer.getPendingCount()
+                    + ", in flight " + writer.getInFlightCount() + "/" + writer.getWindow()
+                );
+            }
+        }
+        catch(InterruptedException e) {
+            //pipeline finished
+        }
+    }
+
+    private synchronized void printStats()
+    {
+        if(batches == 0) return;
+
+        System.err.printf("batches: %d, avg %.1f boards%n", batches, (double) (puzzles - rejected)/batches);
+        System.err.printf("solve queue depth: avg %.2f, max %d%n", (double) solveQueueDepthSum/batches, solveQueueDepthMax);
+        System.err.printf("write queue depth: avg %.2f, max %d%n", (double) writerDepthSum/batches, writerDepthMax);
+
+        if(slowestPuzzle >= 0)
+        {
+            System.err.println("search: " + searchStats);
+            System.err.println("slowest puzzle: #" + (slowestPuzzle + 1) + ", " + slowestStats);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Rates puzzles by the hardest {@link SudokuTechnique} needed to solve them
+ * without guessing. Singles are placed while there are any; when there are
+ * none the eliminations are tried from the easiest on, and the rater goes
+ * back to singles as soon as one removes a candidate, so every step uses
+ * the easiest technique that makes progress.
+ *
+ * A rater is a {@link SudokuSolver} that leaves the board as it is, so the
+ * batch pipeline runs it on every core and writes the ratings in input
+ * order:
+ *   java SudokuRater [--size=N] [--threads=N] [input]
+ */
+public class SudokuRater implements SudokuSolver, SudokuCandidates {
+
+    //ratings beyond the techniques: already solved, stuck without guessing, no solution
+    public static final int NONE = -1;
+    public static final int GUESSING = SudokuTechnique.values().length;
+    public static final int INVALID = GUESSING + 1;
+
+    private static final SudokuTechnique[] ELIMINATIONS = Arrays.stream(SudokuTechnique.values())
+        .filter(SudokuTechnique::isElimination)
+        .toArray(SudokuTechnique[]::new);
+
+    private final SudokuGeometry geometry;
+    private final int size;
+
+    //candidates of free cells, 0 for solved ones
+    private final long[] candidates;
+    //numbers placed in every unit
+    private final long[] unitNumbers;
+    private int cellsLeft;
+    private boolean contradiction;
+
+    private int rating = NONE;
+
+    //how many steps each technique made in the last puzzle
+    private final int[] uses = new int[SudokuTechnique.values().length];
+    private final SudokuTechnique.Scratch scratch;
+
+    public SudokuRater(int size)
+    {
+        this.geometry = SudokuGeometry.of(size);
+        this.size = size;
+        this.candidates = new long[geometry.nCells];
+        this.unitNumbers = new long[geometry.units.length];
+        this.scratch = new SudokuTechnique.Scratch(size);
+    }
+
+    public static String label(int rating)
+    {
+        if(rating == NONE)
+            return "none";
+        if(rating == GUESSING)
+            return "guessing";
+        if(rating == INVALID)
+            return "invalid";
+        return SudokuTechnique.of(rating).label();
+    }
+
+    //the rating of the last board
+    public int getRating()
+    {
+        return rating;
+    }
+
+    public int getUses(SudokuTechnique technique)
+    {
+        return uses[technique.ordinal()];
+    }
+
+    /**
+     * Rates the board, which is left unchanged. Returns whether it can be
+     * solved without guessing.
+     */
+    @Override
+    public boolean solve(char[][] board)
+    {
+        rating = rate(board);
+        return rating < GUESSING;
+    }
+
+    private int rate(char[][] board)
+    {
+        Arrays.fill(uses, 0);
+        if(!load(board))
+            return INVALID;
+
+        int hardest = NONE;
+        while(cellsLeft > 0 && !contradiction)
+        {
+            SudokuTechnique step = null;
+            if(placeNakedSingles())
+                step = SudokuTechnique.NAKED_SINGLE;
+            else if(placeHiddenSingle())
+                step = SudokuTechnique.HIDDEN_SINGLE;
+            else if(!contradiction)
+            {
+                for(SudokuTechnique technique : ELIMINATIONS)
+                    if(technique.apply(this, scratch))
+                    {
+                        step = technique;
+                        break;
+                    }
+            }
+
+            if(step == null)
+                return contradiction ? INVALID : GUESSING;
+
+            uses[step.ordinal()]++;
+            hardest = Math.max(hardest, step.ordinal());
+        }
+
+        return contradiction ? INVALID : hardest;
+    }
+
+    private boolean load(char[][] board)
+    {
+        if(board.length != size)
+            return false;
+
+        Arrays.fill(candidates, geometry.allNumbers);
+        Arrays.fill(unitNumbers, 0);
+        cellsLeft = geometry.nCells;
+        contradiction = false;
+
+        for(int r = 0; r < size; r++)
+        {
+            if(board[r].length != size)
+                return false;
+
+            for(int c = 0; c < size; c++)
+            {
+                final int n = geometry.toNumber(board[r][c]);
+                if(n == SudokuCell.FREE_CELL)
+                    continue;
+
+                final int cell = r*size + c;
+                if((candidates[cell] & (1L << n)) == 0)
+                    return false;
+                place(cell, n);
+            }
+        }
+        return !contradiction;
+    }
+
+    private void place(int cell, int n)
+    {
+        candidates[cell] = 0;
+        cellsLeft--;
+        unitNumbers[geometry.row(geometry.rowOf[cell])] |= 1L << n;
+        unitNumbers[geometry.column(geometry.columnOf[cell])] |= 1L << n;
+        unitNumbers[geometry.region(geometry.regionOf[cell])] |= 1L << n;
+        for(int peer : geometry.peers[cell])
+            if((candidates[peer] & (1L << n)) != 0)
+                eliminate(peer, 1L << n);
+    }
+
+    //places every cell left with one candidate, returning whether there were any
+    private boolean placeNakedSingles()
+    {
+        boolean placed = false;
+        for(int cell = 0; cell < geometry.nCells && !contradiction; cell++)
+        {
+            final long possible = candidates[cell];
+            if(possible != 0 && (possible & (possible - 1)) == 0)
+            {
+                place(cell, Long.numberOfTrailingZeros(possible));
+                placed = true;
+            }
+        }
+        return placed;
+    }
+
+    //places the first number found to fit in only one cell of a unit, a number fitting nowhere is a contradiction
+    private boolean placeHiddenSingle()
+    {
+        for(int u = 0; u < geometry.units.length; u++)
+        {
+            final int[] unit = geometry.units[u];
+            //numbers seen in one cell of the unit, and in more than one
+            long once = 0;
+            long several = 0;
+            for(int cell : unit)
+            {
+                several |= once & candidates[cell];
+                once |= candidates[cell];
+            }
+
+            if((~unitNumbers[u] & ~once & geometry.allNumbers) != 0)
+            {
+                contradiction = true;
+                return false;
+            }
+
+            final long single = once & ~several;
+            if(single == 0)
+                continue;
+
+            final int n = Long.numberOfTrailingZeros(single);
+            for(int cell : unit)
+                if((candidates[cell] & (1L << n)) != 0)
+                {
+                    place(cell, n);
+                    return true;
+                }
+        }
+        return false;
+    }
+
+    @Override
+    public SudokuGeometry getGeometry()
+    {
+        return geometry;
+    }
+
+    @Override
+    public long getCandidates(int cell)
+    {
+        return candidates[cell];
+    }
+
+    @Override
+    public void eliminate(int cell, long numbers)
+    {
+        candidates[cell] &= ~numbers;
+        if(candidates[cell] == 0)
+            contradiction = true;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        String inputFile = null;
+        int size = SudokuGame.SUDOKU_SIZE;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for(String arg : args)
+        {
+            if(arg.startsWith("--size="))
+                size = Integer.parseInt(arg.substring("--size=".length()));
+            else if(arg.startsWith("--threads="))
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            else
+                inputFile = arg;
+        }
+
+        if(!SudokuGeometry.isValidSize(size) || threads < 1)
+        {
+            System.err.println("Usage: SudokuRater [--size=N] [--threads=N] [input]");
+            System.exit(1);
+        }
+
+        SudokuReader reader;
+        if(inputFile != null && Sudoku.isBinary(Path.of(inputFile)))
+        {
+            var binary = SudokuBinaryReader.open(Path.of(inputFile));
+            size = binary.getSize();
+            reader = binary;
+        }
+        else
+            reader = inputFile != null ? SudokuParser.open(Path.of(inputFile), size) : SudokuParser.open(System.in, size);
+
+        final int boardSize = size;
+        var output = new SudokuRatingOutput(System.out, size);
+        boolean failed = false;
+        try(reader)
+        {
+            var writer = new SudokuResultWriter(output, true, SudokuResultWriter.DEFAULT_WINDOW,
+                SudokuPipeline.MAX_GAMES_PER_BATCH, size);
+            new SudokuPipeline(threads, () -> new SudokuRater(boardSize), false, writer).run(reader);
+        }
+        catch(IOException e) {
+            System.err.println("Failed to read puzzles: " + e.getMessage());
+            failed = true;
+        }
+
+        System.err.println(output.summary());
+        if(failed)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,51 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One line per board: the board on one line, as the compact layout, then
+ * the rating {@link SudokuRater} gave it. Keeps a count of each rating for
+ * the summary.
+ */
+class SudokuRatingOutput implements SudokuOutput {
+
+    private final SudokuTextOutput cells;
+    //the rating and the line end written after every board, indexed by rating + 1, NONE is -1
+    private final byte[][] labels;
+    private final long[] counts;
+
+    public SudokuRatingOutput(OutputStream out, int size)
+    {
+        this.cells = SudokuTextOutput.cells(out, size);
+        this.labels = new byte[SudokuRater.INVALID + 2][];
+        for(int rating = SudokuRater.NONE; rating <= SudokuRater.INVALID; rating++)
+            labels[rating + 1] = (" " + SudokuRater.label(rating) + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+        this.counts = new long[labels.length];
+    }
+
+    @Override
+    public void write(char[][] board, long rating) throws IOException
+    {
+        cells.write(board, rating);
+        cells.append(labels[(int) rating + 1]);
+        counts[(int) rating + 1]++;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        cells.flush();
+    }
+
+    //boards per rating, from the easiest
+    public String summary()
+    {
+        StringBuilder summary = new StringBuilder("ratings:");
+        for(int i = 0; i < counts.length; i++)
+            if(counts[i] > 0)
+                summary.append(' ').append(SudokuRater.label(i - 1)).append(' ').append(counts[i]).append(',');
+        if(summary.charAt(summary.length() - 1) == ',')
+            summary.setLength(summary.length() - 1);
+        return summary.toString();
+    }
+}
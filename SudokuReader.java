@@ -0,0 +1,31 @@
+import java.io.IOException;
+
+/**
+ * A source of puzzles for the pipeline, text or binary.
+ */
+interface SudokuReader extends AutoCloseable {
+
+    /**
+     * Reads the next puzzle into {@code board}.
+     * Returns false when the input ends before a complete puzzle.
+     */
+    boolean next(char[][] board) throws IOException;
+
+    /**
+     * Why the last puzzle read is malformed, labelled with index, or null
+     * when it was read whole. Its board is then left incomplete.
+     */
+    default SudokuReject checkShape(long index)
+    {
+        return null;
+    }
+
+    //line the last puzzle read started on, from 1, or 0 when the input has no lines
+    default long getLine()
+    {
+        return 0;
+    }
+
+    @Override
+    void close() throws IOException;
+}
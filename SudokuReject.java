@@ -0,0 +1,64 @@
+/**
+ * A puzzle turned away by {@link SudokuValidator} before any solver sees
+ * it: why, where it was in the input, and the cell that gave it away.
+ */
+final class SudokuReject {
+
+    public enum Reason {
+        //rows missing or of the wrong length, or a puzzle cut short by the end of input
+        SHAPE,
+        //a number given twice in a row, column or region
+        DUPLICATE,
+        //a free cell whose row, column and region already hold every number
+        NO_CANDIDATE,
+        //a binary record holding a cell value beyond the board size
+        CORRUPTED;
+
+        public String label()
+        {
+            return name().toLowerCase().replace('_', ' ');
+        }
+    }
+
+    //input position, from 0, and line the puzzle started on, 0 when the input has no lines
+    final long index;
+    final long line;
+    final Reason reason;
+
+    //the offending cell; for SHAPE the row and the cells found in it, -1 when the input ended there, or both -1
+    final int row;
+    final int column;
+    final char symbol;
+
+    SudokuReject(long index, long line, Reason reason, int row, int column, char symbol)
+    {
+        this.index = index;
+        this.line = line;
+        this.reason = reason;
+        this.row = row;
+        this.column = column;
+        this.symbol = symbol;
+    }
+
+    //"puzzle #3, line 21: duplicate '5' at row 4, column 7", "puzzle #4, line 33: shape, 8 cells in row 2"
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder("puzzle #").append(index + 1);
+        if(line > 0)
+            text.append(", line ").append(line);
+        text.append(": ").append(reason.label());
+        if(reason == Reason.DUPLICATE)
+            text.append(" '").append(symbol).append('\'');
+        if(reason == Reason.SHAPE)
+        {
+            if(row >= 0 && column < 0)
+                text.append(", input ends before row ").append(row + 1);
+            else if(row >= 0)
+                text.append(", ").append(column).append(" cells in row ").append(row + 1);
+        }
+        else if(row >= 0)
+            text.append(" at row ").append(row + 1).append(", column ").append(column + 1);
+        return text.toString();
+    }
+}
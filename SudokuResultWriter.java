@@ -0,0 +1,190 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes solved batches to a {@link SudokuOutput} as soon as they (and, in ordered mode, all the
+ * batches before them) are done. The writer owns a pool of {@code window}
+ * batches that are recycled once printed, so memory stays constant
+ * whatever the input size.
+ */
+class SudokuResultWriter {
+
+    public static final int DEFAULT_WINDOW = 64;
+
+    private final SudokuOutput output;
+    private final int boardSize;
+    private final boolean ordered;
+    private final int window;
+    private final BlockingQueue<SudokuBatch> freeBatches;
+
+    //ordered mode: batch with sequence number s waits in pending[s % window]
+    private final SudokuBatch[] pending;
+
+    //unordered mode: batches in completion order
+    private final Deque<SudokuBatch> completed = new ArrayDeque<>();
+
+    private long batchesSubmitted = 0;
+    private long batchesCompleted = 0;
+    private long batchesTaken = 0;
+    private boolean closed = false;
+
+    private final Thread writerThread;
+
+    public SudokuResultWriter(SudokuOutput output, boolean ordered, int window, int batchCapacity, int boardSize)
+    {
+        assert window > 0;
+        this.output = output;
+        this.boardSize = boardSize;
+        this.ordered = ordered;
+        this.window = window;
+        this.freeBatches = new ArrayBlockingQueue<>(window);
+        for(int i = 0; i < window; i++)
+            freeBatches.add(new SudokuBatch(batchCapacity, boardSize));
+        this.pending = ordered ? new SudokuBatch[window] : null;
+
+        this.writerThread = new Thread(this::writeLoop, "sudoku-writer");
+        this.writerThread.start();
+    }
+
+    //returns an empty batch with the next sequence number, blocks while the reorder window is full
+    public SudokuBatch acquireBatch() throws InterruptedException
+    {
+        SudokuBatch batch = freeBatches.take();
+        batch.size = 0;
+        synchronized(this) {
+            batch.sequence = batchesSubmitted++;
+        }
+        return batch;
+    }
+
+    public synchronized void completed(SudokuBatch batch)
+    {
+        if(ordered)
+        {
+            assert pending[(int) (batch.sequence % window)] == null;
+            pending[(int) (batch.sequence % window)] = batch;
+        }
+        else
+            completed.addLast(batch);
+
+        batchesCompleted++;
+        notifyAll();
+    }
+
+    public int getBoardSize()
+    {
+        return boardSize;
+    }
+
+    public int getWindow()
+    {
+        return window;
+    }
+
+    //batches read but not yet written
+    public int getInFlightCount()
+    {
+        return window - freeBatches.size();
+    }
+
+    //batches solved and waiting to be written
+    public synchronized int getPendingCount()
+    {
+        return (int) (batchesCompleted - batchesTaken);
+    }
+
+    //the next batch to write if it is done, without waiting
+    private synchronized SudokuBatch pollNext()
+    {
+        SudokuBatch batch;
+        if(ordered)
+        {
+            int slot = (int) (batchesTaken % window);
+            batch = pending[slot];
+            pending[slot] = null;
+        }
+        else
+            batch = completed.pollFirst();
+
+        if(batch != null)
+            batchesTaken++;
+        return batch;
+    }
+
+    private synchronized SudokuBatch takeNext() throws InterruptedException
+    {
+        SudokuBatch batch;
+        while((batch = pollNext()) == null)
+        {
+            if(closed && batchesTaken == batchesSubmitted)
+                return null;
+
+            wait();
+        }
+        return batch;
+    }
+
+    private void writeLoop()
+    {
+        //after a write error batches are still recycled, so the pipeline drains instead of blocking
+        IOException error = null;
+        try {
+            while(true)
+            {
+                //nothing ready: what was written so far goes out before waiting, so results stream
+                SudokuBatch batch = pollNext();
+                if(batch == null)
+                {
+                    error = flush(error);
+                    if((batch = takeNext()) == null)
+                        break;
+                }
+
+                try {
+                    for(int i = 0; i < batch.size && error == null; i++)
+                        output.write(batch.boards[i], batch.results[i]);
+                }
+                catch(IOException e) {
+                    error = e;
+                    System.err.println("Failed to write results: " + e.getMessage());
+                }
+
+                freeBatches.add(batch);
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush(error);
+    }
+
+    //returns the first write error, reported once
+    private IOException flush(IOException error)
+    {
+        if(error != null)
+            return error;
+
+        try {
+            output.flush();
+            return null;
+        }
+        catch(IOException e) {
+            System.err.println("Failed to write results: " + e.getMessage());
+            return e;
+        }
+    }
+
+    //waits until every submitted batch has been written
+    public void close() throws InterruptedException
+    {
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+        writerThread.join();
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * The sweep kernels one cell or one unit at a time, used when the vector
+ * API is not available.
+ */
+final class SudokuScalarLanes implements SudokuLanes {
+
+    private final SudokuGeometry geometry;
+    private final int allNumbers;
+
+    SudokuScalarLanes(SudokuGeometry geometry)
+    {
+        this.geometry = geometry;
+        this.allNumbers = (int) geometry.allNumbers;
+    }
+
+    @Override
+    public SudokuGeometry getGeometry()
+    {
+        return geometry;
+    }
+
+    @Override
+    public String describe()
+    {
+        return "scalar";
+    }
+
+    @Override
+    public void unitOccurrences(int[] cells, int[] once, int[] twice)
+    {
+        final int[][] units = geometry.units;
+        for(int u = 0; u < units.length; u++)
+        {
+            int seen = 0, repeated = 0;
+            for(int cell : units[u])
+            {
+                repeated |= seen & cells[cell];
+                seen |= cells[cell];
+            }
+            once[u] = seen;
+            twice[u] = repeated;
+        }
+    }
+
+    @Override
+    public int sweep(int[] placed, int[] unitNumbers, int[] candidates)
+    {
+        final int size = geometry.size;
+        int singles = 0;
+        for(int i = 0; i < geometry.nCells; i++)
+        {
+            if(placed[i] != 0)
+            {
+                candidates[i] = 0;
+                continue;
+            }
+
+            final int c = ~(unitNumbers[geometry.rowOf[i]] | unitNumbers[size + geometry.columnOf[i]]
+                | unitNumbers[2*size + geometry.regionOf[i]]) & allNumbers;
+            candidates[i] = c;
+            if(c == 0)
+                return -1;
+            if((c & (c - 1)) == 0)
+            {
+                placed[i] = c;
+                singles++;
+            }
+        }
+        return singles;
+    }
+
+    @Override
+    public void counts(int[] candidates, int[] counts)
+    {
+        for(int i = 0; i < geometry.nCells; i++)
+            counts[i] = Integer.bitCount(candidates[i]);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Search counters of one solve of a {@link SudokuGame}, reset when the next
+ * solve starts. Updating them is a plain field increment on paths that
+ * already do far more work, so they are always on.
+ *
+ * With parallel search only the work done by the calling game is counted,
+ * not the branches explored by the fork/join tasks.
+ */
+class SudokuSearchStats {
+
+    //candidates tried by the backtracking search, and those proven wrong and undone
+    long guesses;
+    long backtracks;
+
+    //cells solved by propagation, and candidates removed from peers of solved cells
+    long placements;
+    long eliminations;
+
+    //cells reduced to one number because it fits nowhere else in a unit
+    long hiddenSingles;
+
+    //elimination techniques that removed candidates before the search had to guess
+    long techniqueSteps;
+
+    int maxDepth;
+    long nanos;
+
+    void reset()
+    {
+        guesses = 0;
+        backtracks = 0;
+        placements = 0;
+        eliminations = 0;
+        hiddenSingles = 0;
+        techniqueSteps = 0;
+        maxDepth = 0;
+        nanos = 0;
+    }
+
+    //accumulates the counters of another solve, keeping the deepest search
+    void add(SudokuSearchStats other)
+    {
+        guesses += other.guesses;
+        backtracks += other.backtracks;
+        placements += other.placements;
+        eliminations += other.eliminations;
+        hiddenSingles += other.hiddenSingles;
+        techniqueSteps += other.techniqueSteps;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        nanos += other.nanos;
+    }
+
+    public long getGuesses()
+    {
+        return guesses;
+    }
+
+    public long getBacktracks()
+    {
+        return backtracks;
+    }
+
+    public long getPlacements()
+    {
+        return placements;
+    }
+
+    public long getEliminations()
+    {
+        return eliminations;
+    }
+
+    public long getHiddenSingles()
+    {
+        return hiddenSingles;
+    }
+
+    public long getTechniqueSteps()
+    {
+        return techniqueSteps;
+    }
+
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "guesses " + guesses
+            + ", backtracks " + backtracks
+            + ", placements " + placements
+            + ", eliminations " + eliminations
+            + ", hidden singles " + hiddenSingles
+            + ", technique steps " + techniqueSteps
+            + ", max depth " + maxDepth
+            + ", " + nanos/1000 + " us";
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU of solutions keyed by canonical form, shared by all the solver
+ * threads. The map is split into independently locked stripes so threads
+ * rarely wait on each other; each stripe evicts its least recently used
+ * entry once full.
+ */
+class SudokuSolutionCache {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static class Stripe extends LinkedHashMap<String, char[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, char[]> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+
+    public SudokuSolutionCache(int capacity)
+    {
+        assert capacity > 0;
+        for(int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe(Math.max(1, (capacity + STRIPES - 1)/STRIPES));
+    }
+
+    private Stripe stripeOf(String key)
+    {
+        final int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    //the cached canonical solution, or null
+    public char[] get(String key)
+    {
+        Stripe stripe = stripeOf(key);
+        char[] solution;
+        synchronized(stripe) {
+            solution = stripe.get(key);
+        }
+
+        if(solution == null)
+            misses.increment();
+        else
+            hits.increment();
+
+        return solution;
+    }
+
+    public void put(String key, char[] solution)
+    {
+        Stripe stripe = stripeOf(key);
+        synchronized(stripe) {
+            stripe.put(key, solution);
+        }
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for(Stripe stripe : stripes)
+            synchronized(stripe) {
+                size += stripe.size();
+            }
+        return size;
+    }
+
+    @Override
+    public String toString()
+    {
+        final long hits = getHits(), misses = getMisses();
+        final long lookups = hits + misses;
+        return String.format("cache: hits %d, misses %d, hit rate %.1f%%, entries %d",
+            hits, misses, lookups == 0 ? 0.0 : 100.0*hits/lookups, size());
+    }
+}
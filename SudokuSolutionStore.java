@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * On disk puzzle -> solution table for 9x9 boards, memory mapped and shared
+ * by every run and every JVM on the host that opens the same file.
+ *
+ * The file is a header followed by a fixed number of slots, addressed by
+ * open addressing with linear probing over the 81 byte key (the number of
+ * every cell, 0 when free). A slot holds a state word, the key and the
+ * solution packed 4 bits per cell. Slots are only ever appended: a writer
+ * fills key and solution, then publishes the state with release semantics,
+ * so lock-free readers that see it with acquire semantics see the whole
+ * entry. Writers serialize on a lock of the header region, which also
+ * guards the entry count.
+ */
+class SudokuSolutionStore implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 18;
+    private static final int MAX_CAPACITY = 1 << 23;
+    private static final double MAX_LOAD = 0.75;
+
+    private static final long MAGIC = 0x5355444f4b555331L; //"SUDOKUS1"
+    private static final int VERSION = 1;
+
+    static final int KEY_SIZE = SudokuGame.SUDOKU_SIZE*SudokuGame.SUDOKU_SIZE;
+    private static final int SOLUTION_SIZE = (KEY_SIZE + 1)/2;
+
+    //header: magic, version, capacity, entries
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+
+    //slot: state, key, packed solution
+    private static final int SLOT_SIZE = 128;
+    private static final int STATE = 0;
+    private static final int KEY = 4;
+    private static final int SOLUTION = KEY + KEY_SIZE;
+
+    private static final int EMPTY = 0;
+    private static final int PUBLISHED = 1;
+
+    private static final VarHandle STATE_HANDLE =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder added = new LongAdder();
+    private volatile boolean full = false;
+
+    private SudokuSolutionStore(Path path, FileChannel channel, MappedByteBuffer buffer, int capacity)
+    {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Opens the store at path, creating it with room for capacity solutions
+     * (rounded up to a power of two) if it does not exist. An existing store
+     * keeps the capacity it was created with.
+     */
+    public static SudokuSolutionStore open(Path path, int capacity) throws IOException
+    {
+        capacity = Integer.highestOneBit(Math.max(2, Math.min(MAX_CAPACITY, capacity) - 1)) << 1;
+
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+        try {
+            //only one JVM may create the file, the others wait and read its header
+            final FileLock lock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                if(channel.size() == 0)
+                {
+                    MappedByteBuffer created = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+                    created.putLong(MAGIC_OFFSET, MAGIC);
+                    created.putInt(VERSION_OFFSET, VERSION);
+                    created.putInt(CAPACITY_OFFSET, capacity);
+                    created.putInt(COUNT_OFFSET, 0);
+                    created.force();
+                }
+
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if(header.getLong(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION)
+                    throw new IOException("Not a solution store: " + path);
+                capacity = header.getInt(CAPACITY_OFFSET);
+            }
+            finally {
+                lock.release();
+            }
+
+            if(Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY || channel.size() < fileSize(capacity))
+                throw new IOException("Corrupted solution store: " + path);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+            return new SudokuSolutionStore(path, channel, buffer, capacity);
+        }
+        catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long fileSize(int capacity)
+    {
+        return HEADER_SIZE + (long) capacity*SLOT_SIZE;
+    }
+
+    /**
+     * Writes the key of a 9x9 board, the number + 1 of every clue and 0 for
+     * free cells. Returns false for boards of any other shape.
+     */
+    static boolean toKey(char[][] board, byte[] key)
+    {
+        final int size = SudokuGame.SUDOKU_SIZE;
+        if(board.length != size)
+            return false;
+
+        for(int r = 0; r < size; r++)
+        {
+            if(board[r].length != size)
+                return false;
+            for(int c = 0; c < size; c++)
+            {
+                final int n = board[r][c] - '0';
+                key[r*size + c] = (byte) (n >= 1 && n <= size ? n : 0);
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] key)
+    {
+        long h = 0xcbf29ce484222325L;
+        for(byte b : key)
+            h = (h ^ b)*0x100000001b3L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slotOffset(int slot)
+    {
+        return HEADER_SIZE + slot*SLOT_SIZE;
+    }
+
+    //offset of the published slot holding key, or the complement of the first empty slot
+    private int probe(byte[] key)
+    {
+        final int start = hash(key) & mask;
+        for(int i = 0; i < capacity; i++)
+        {
+            final int offset = slotOffset((start + i) & mask);
+            if((int) STATE_HANDLE.getAcquire(buffer, offset + STATE) == EMPTY)
+                return ~offset;
+            if(keyEquals(offset, key))
+                return offset;
+        }
+        throw new IllegalStateException("Solution store is full: " + path);
+    }
+
+    private boolean keyEquals(int offset, byte[] key)
+    {
+        for(int i = 0; i < KEY_SIZE; i++)
+            if(buffer.get(offset + KEY + i) != key[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Fills the board with the stored solution of key.
+     * Returns false when the store does not know the puzzle.
+     */
+    public boolean find(byte[] key, char[][] board)
+    {
+        final int offset = probe(key);
+        if(offset < 0)
+        {
+            misses.increment();
+            return false;
+        }
+
+        final int size = SudokuGame.SUDOKU_SIZE;
+        for(int i = 0; i < KEY_SIZE; i++)
+        {
+            final int packed = buffer.get(offset + SOLUTION + i/2);
+            final int n = (i & 1) == 0 ? packed & 0xf : (packed >>> 4) & 0xf;
+            board[i / size][i % size] = (char) ('0' + n + 1);
+        }
+
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * Appends the solution of key, unless some JVM already stored it or the
+     * store reached its maximum load.
+     */
+    public synchronized void add(byte[] key, char[][] solution) throws IOException
+    {
+        if(full) return;
+
+        final FileLock lock = channel.lock(0, HEADER_SIZE, false);
+        try {
+            final int count = buffer.getInt(COUNT_OFFSET);
+            if(count >= capacity*MAX_LOAD)
+            {
+                full = true;
+                System.err.println("Solution store is full, no more solutions are added: " + path);
+                return;
+            }
+
+            int offset = probe(key);
+            if(offset >= 0)
+                return;
+            offset = ~offset;
+
+            final int size = SudokuGame.SUDOKU_SIZE;
+            for(int i = 0; i < KEY_SIZE; i++)
+                buffer.put(offset + KEY + i, key[i]);
+            for(int i = 0; i < KEY_SIZE; i += 2)
+            {
+                int packed = solution[i / size][i % size] - '0' - 1;
+                if(i + 1 < KEY_SIZE)
+                    packed |= (solution[(i + 1) / size][(i + 1) % size] - '0' - 1) << 4;
+                buffer.put(offset + SOLUTION + i/2, (byte) packed);
+            }
+
+            //readers that see the state see the whole slot
+            STATE_HANDLE.setRelease(buffer, offset + STATE, PUBLISHED);
+            buffer.putInt(COUNT_OFFSET, count + 1);
+            added.increment();
+        }
+        finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "store: hits " + hits.sum() + ", misses " + misses.sum() + ", added " + added.sum()
+            + ", entries " + buffer.getInt(COUNT_OFFSET) + "/" + capacity;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        buffer.force();
+        channel.close();
+    }
+}
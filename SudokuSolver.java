@@ -0,0 +1,31 @@
+/**
+ * A solving engine. Fills the free cells of the board in place and returns
+ * false when the board is invalid or has no solution.
+ */
+interface SudokuSolver {
+
+    long NO_DEADLINE = Long.MAX_VALUE;
+
+    boolean solve(char[][] board);
+
+    /**
+     * A System.nanoTime() after which solves give up, failing as over
+     * budget. May be called from any thread, the solve running then may
+     * still miss it: {@link #cancel} stops that one. Engines whose solves
+     * never search, such as the rater, ignore it.
+     */
+    default void setDeadline(long deadline)
+    {
+    }
+
+    //stops the solve running now, from any thread: it fails as over budget
+    default void cancel()
+    {
+    }
+
+    //true when the last solve gave up on its deadline, budget or cancel
+    default boolean isBudgetExceeded()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Solver recomputing the whole board at every step instead of updating
+ * peers one cell at a time: each sweep rebuilds the unit masks from the
+ * placed numbers, the candidates of every cell from the unit masks, and
+ * places every naked single found, all through {@link SudokuLanes} kernels
+ * that work on many cells at once. When a sweep places nothing, hidden
+ * singles come from the candidates of every unit; when there are none
+ * either, the search branches on the cell with the fewest candidates.
+ *
+ * Placed numbers are one int per cell, so a guess copies them to the next
+ * level instead of keeping a trail. Numbers are bits of an int, so boards
+ * up to 25x25 are supported.
+ */
+class SudokuSweepSolver implements SudokuSolver {
+
+    static final int MAX_SIZE = 25;
+
+    private final SudokuGeometry geometry;
+    private final SudokuLanes lanes;
+    private final int size;
+    private final int nCells;
+    private final int allNumbers;
+
+    //placed numbers of every search level, allocated as the search gets there
+    private final int[][] levels;
+
+    private final int[] unitNumbers;
+    private final int[] candidates;
+    private final int[] counts;
+    private final int[] once;
+    private final int[] twice;
+
+    private final SudokuSearchStats stats = new SudokuSearchStats();
+    private int solvedDepth;
+
+    //every CLOCK_INTERVAL guesses the search reads the clock and cancel, and gives up past the deadline or once cancelled
+    private static final int CLOCK_INTERVAL = 64;
+    private volatile long deadline = NO_DEADLINE;
+    private volatile boolean cancelled = false;
+    private long searchDeadline = NO_DEADLINE;
+    private boolean budgetExceeded = false;
+
+    public SudokuSweepSolver(int size)
+    {
+        this(SudokuLanes.of(SudokuGeometry.of(size)));
+    }
+
+    public SudokuSweepSolver(SudokuLanes lanes)
+    {
+        this.lanes = lanes;
+        this.geometry = lanes.getGeometry();
+        this.size = geometry.size;
+        this.nCells = geometry.nCells;
+        this.allNumbers = (int) geometry.allNumbers;
+
+        if(size > MAX_SIZE)
+            throw new IllegalArgumentException("The sweep solver supports boards up to " + MAX_SIZE + "x" + MAX_SIZE);
+
+        levels = new int[nCells + 1][];
+        unitNumbers = new int[lanes.unitCapacity()];
+        once = new int[lanes.unitCapacity()];
+        twice = new int[lanes.unitCapacity()];
+        candidates = new int[lanes.cellCapacity()];
+        counts = new int[lanes.cellCapacity()];
+    }
+
+    public SudokuLanes getLanes()
+    {
+        return lanes;
+    }
+
+    public SudokuSearchStats getStats()
+    {
+        return stats;
+    }
+
+    @Override
+    public void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    @Override
+    public boolean isBudgetExceeded()
+    {
+        return budgetExceeded;
+    }
+
+    @Override
+    public boolean solve(char[][] board)
+    {
+        stats.reset();
+
+        //cleared before the deadline is read, see SudokuGame.reset
+        cancelled = false;
+        budgetExceeded = false;
+        searchDeadline = deadline;
+
+        if(board.length != size)
+            return false;
+
+        final int[] placed = level(0);
+        for(int r = 0; r < size; r++)
+        {
+            if(board[r].length != size)
+                return false;
+
+            for(int c = 0; c < size; c++)
+            {
+                final int n = geometry.toNumber(board[r][c]);
+                placed[r*size + c] = n == SudokuCell.FREE_CELL ? 0 : 1 << n;
+            }
+        }
+
+        if(!search(0))
+            return false;
+
+        final int[] solution = levels[solvedDepth];
+        for(int i = 0; i < nCells; i++)
+            board[geometry.rowOf[i]][geometry.columnOf[i]] = geometry.toSymbol(Integer.numberOfTrailingZeros(solution[i]));
+        return true;
+    }
+
+    private int[] level(int depth)
+    {
+        if(levels[depth] == null)
+            levels[depth] = new int[lanes.cellCapacity()];
+        return levels[depth];
+    }
+
+    //true when the level's board is solved, leaving the solution in that level
+    private boolean search(int depth)
+    {
+        final int[] placed = levels[depth];
+        stats.maxDepth = Math.max(stats.maxDepth, depth);
+
+        if(!propagate(placed))
+            return false;
+
+        lanes.counts(candidates, counts);
+        int cell = -1;
+        for(int i = 0; i < nCells; i++)
+            if(candidates[i] != 0 && (cell < 0 || counts[i] < counts[cell]))
+                cell = i;
+        if(cell < 0)
+        {
+            solvedDepth = depth;
+            return true;
+        }
+
+        final int[] next = level(depth + 1);
+        for(int tries = candidates[cell]; tries != 0 && !isOverBudget(); tries &= tries - 1)
+        {
+            stats.guesses++;
+            System.arraycopy(placed, 0, next, 0, nCells);
+            next[cell] = tries & -tries;
+            if(search(depth + 1))
+                return true;
+            stats.backtracks++;
+        }
+        return false;
+    }
+
+    private boolean isOverBudget()
+    {
+        if(!budgetExceeded && stats.guesses % CLOCK_INTERVAL == 0
+            && (cancelled || (searchDeadline != NO_DEADLINE && System.nanoTime() - searchDeadline > 0)))
+            budgetExceeded = true;
+        return budgetExceeded;
+    }
+
+    /**
+     * Places singles until none is left, leaving the candidates of the
+     * remaining free cells. Returns false on a contradiction.
+     */
+    private boolean propagate(int[] placed)
+    {
+        while(true)
+        {
+            //a number twice in a unit: two singles took the same number
+            lanes.unitOccurrences(placed, unitNumbers, twice);
+            for(int u = 0; u < 3*size; u++)
+                if(twice[u] != 0)
+                    return false;
+
+            final int singles = lanes.sweep(placed, unitNumbers, candidates);
+            if(singles < 0)
+                return false;
+            if(singles > 0)
+            {
+                stats.placements += singles;
+                continue;
+            }
+
+            lanes.unitOccurrences(candidates, once, twice);
+            boolean placedAny = false;
+            for(int u = 0; u < 3*size; u++)
+            {
+                if(((unitNumbers[u] | once[u]) & allNumbers) != allNumbers)
+                    return false;
+
+                for(int single = once[u] & ~twice[u]; single != 0; single &= single - 1)
+                {
+                    final int bit = single & -single;
+                    for(int i : geometry.units[u])
+                        if((candidates[i] & bit) != 0)
+                        {
+                            //a cell that is the only place of two numbers fails the next sweep
+                            if(placed[i] == 0)
+                            {
+                                placed[i] = bit;
+                                stats.hiddenSingles++;
+                                placedAny = true;
+                            }
+                            break;
+                        }
+                }
+            }
+
+            if(!placedAny)
+                return true;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+import java.util.Arrays;
+
+/**
+ * Human solving techniques, from the easiest to the hardest. Singles place
+ * numbers and are applied by the solvers themselves; the others only
+ * eliminate candidates, through {@link #apply}, and are also roughly in
+ * order of cost.
+ */
+enum SudokuTechnique {
+
+    NAKED_SINGLE,
+    HIDDEN_SINGLE,
+
+    //the candidates of a number in a region all lie on one line: the rest of the line loses it
+    POINTING {
+        @Override
+        boolean apply(SudokuCandidates grid, Scratch scratch)
+        {
+            final int size = grid.getGeometry().size;
+            boolean eliminated = false;
+            for(int region = 2*size; region < 3*size; region++)
+                eliminated |= lockedCandidates(grid, region, ROWS, scratch.shared)
+                    | lockedCandidates(grid, region, COLUMNS, scratch.shared);
+            return eliminated;
+        }
+    },
+
+    //the candidates of a number in a line all lie in one region: the rest of the region loses it
+    BOX_LINE {
+        @Override
+        boolean apply(SudokuCandidates grid, Scratch scratch)
+        {
+            final int size = grid.getGeometry().size;
+            boolean eliminated = false;
+            for(int line = 0; line < 2*size; line++)
+                eliminated |= lockedCandidates(grid, line, REGIONS, scratch.shared);
+            return eliminated;
+        }
+    },
+
+    NAKED_PAIR {
+        @Override
+        boolean apply(SudokuCandidates grid, Scratch scratch)
+        {
+            return nakedSubsets(grid, 2, scratch);
+        }
+    },
+
+    //two lines where a number fits in the same two crossing lines: the rest of those loses it
+    X_WING {
+        @Override
+        boolean apply(SudokuCandidates grid, Scratch scratch)
+        {
+            final int size = grid.getGeometry().size;
+            return xWing(grid, 0, size, scratch.places) | xWing(grid, size, 0, scratch.places);
+        }
+    },
+
+    HIDDEN_PAIR {
+        @Override
+        boolean apply(SudokuCandidates grid, Scratch scratch)
+        {
+            return hiddenSubsets(grid, 2, scratch);
+        }
+    },
+
+    NAKED_TRIPLE {
+        @Override
+        boolean apply(SudokuCandidates grid, Scratch scratch)
+        {
+            return nakedSubsets(grid, 3, scratch);
+        }
+    },
+
+    HIDDEN_TRIPLE {
+        @Override
+        boolean apply(SudokuCandidates grid, Scratch scratch)
+        {
+            return hiddenSubsets(grid, 3, scratch);
+        }
+    };
+
+    private static final SudokuTechnique[] VALUES = values();
+
+    //work arrays of the techniques for one board size, allocated once per solver so applying them does not allocate
+    static final class Scratch {
+
+        final int[] shared;
+        final int[] subset;
+        final long[] positions;
+        final long[] places;
+
+        Scratch(int size)
+        {
+            shared = new int[size];
+            subset = new int[size];
+            positions = new long[size];
+            places = new long[size];
+        }
+    }
+
+    //kinds of units, in the order SudokuGeometry numbers them
+    private static final int ROWS = 0, COLUMNS = 1, REGIONS = 2;
+
+    public static SudokuTechnique of(int ordinal)
+    {
+        return VALUES[ordinal];
+    }
+
+    public boolean isElimination()
+    {
+        return ordinal() > HIDDEN_SINGLE.ordinal();
+    }
+
+    //"naked pair", "x wing", ...
+    public String label()
+    {
+        return name().toLowerCase().replace('_', ' ');
+    }
+
+    /**
+     * Removes every candidate the technique rules out, returning whether it
+     * removed any. Only eliminating techniques implement it.
+     */
+    boolean apply(SudokuCandidates grid, Scratch scratch)
+    {
+        throw new UnsupportedOperationException(label() + " places numbers");
+    }
+
+    private static boolean isInUnit(SudokuGeometry geometry, int unit, int cell)
+    {
+        final int size = geometry.size;
+        if(unit < size)
+            return geometry.rowOf[cell] == unit;
+        if(unit < 2*size)
+            return geometry.columnOf[cell] == unit - size;
+        return geometry.regionOf[cell] == unit - 2*size;
+    }
+
+    //the unit of the given kind holding cell
+    private static int unitOf(SudokuGeometry geometry, int cell, int kind)
+    {
+        final int size = geometry.size;
+        switch(kind)
+        {
+            case ROWS:
+                return geometry.rowOf[cell];
+            case COLUMNS:
+                return size + geometry.columnOf[cell];
+            default:
+                return 2*size + geometry.regionOf[cell];
+        }
+    }
+
+    //removes the numbers from the cells of unit outside the cells of except
+    private static boolean eliminateOutside(SudokuCandidates grid, int unit, int except, long numbers)
+    {
+        final SudokuGeometry geometry = grid.getGeometry();
+        boolean eliminated = false;
+        for(int cell : geometry.units[unit])
+            if((grid.getCandidates(cell) & numbers) != 0 && !isInUnit(geometry, except, cell))
+            {
+                grid.eliminate(cell, numbers);
+                eliminated = true;
+            }
+        return eliminated;
+    }
+
+    /**
+     * For every number of unit whose candidates all lie in one unit of the
+     * given kind, removes it from the rest of that unit.
+     */
+    private static boolean lockedCandidates(SudokuCandidates grid, int unit, int kind, int[] shared)
+    {
+        final SudokuGeometry geometry = grid.getGeometry();
+
+        //per number: the unit shared by every candidate cell, -1 if they are spread, -2 if there are none
+        Arrays.fill(shared, -2);
+        for(int cell : geometry.units[unit])
+        {
+            final int own = unitOf(geometry, cell, kind);
+            for(long candidates = grid.getCandidates(cell); candidates != 0; candidates &= candidates - 1)
+            {
+                final int n = Long.numberOfTrailingZeros(candidates);
+                shared[n] = shared[n] == -2 || shared[n] == own ? own : -1;
+            }
+        }
+
+        boolean eliminated = false;
+        for(int n = 0; n < geometry.size; n++)
+            if(shared[n] >= 0)
+                eliminated |= eliminateOutside(grid, shared[n], unit, 1L << n);
+        return eliminated;
+    }
+
+    //k free cells of a unit whose candidates are k numbers: no other cell of the unit holds those
+    private static boolean nakedSubsets(SudokuCandidates grid, int k, Scratch scratch)
+    {
+        final SudokuGeometry geometry = grid.getGeometry();
+        final int[] subset = scratch.subset;
+        boolean eliminated = false;
+
+        for(int unit = 0; unit < 3*geometry.size; unit++)
+        {
+            //cells small enough to be part of a subset
+            final int[] cells = geometry.units[unit];
+            int count = 0;
+            for(int i = 0; i < cells.length; i++)
+            {
+                final int candidates = Long.bitCount(grid.getCandidates(cells[i]));
+                if(candidates >= 2 && candidates <= k)
+                    subset[count++] = i;
+            }
+            eliminated |= nakedSubsets(grid, cells, subset, count, k, 0, 0, 0L, 0L);
+        }
+        return eliminated;
+    }
+
+    //chosen: positions in the unit picked so far, numbers: their candidates
+    private static boolean nakedSubsets(SudokuCandidates grid, int[] cells, int[] subset, int count, int k,
+        int start, int depth, long chosen, long numbers)
+    {
+        if(Long.bitCount(numbers) > k)
+            return false;
+
+        if(depth == k)
+        {
+            boolean eliminated = false;
+            for(int i = 0; i < cells.length; i++)
+                if((chosen & (1L << i)) == 0 && (grid.getCandidates(cells[i]) & numbers) != 0)
+                {
+                    grid.eliminate(cells[i], numbers);
+                    eliminated = true;
+                }
+            return eliminated;
+        }
+
+        boolean eliminated = false;
+        for(int s = start; s < count; s++)
+        {
+            final int i = subset[s];
+            eliminated |= nakedSubsets(grid, cells, subset, count, k, s + 1, depth + 1,
+                chosen | (1L << i), numbers | grid.getCandidates(cells[i]));
+        }
+        return eliminated;
+    }
+
+    //k numbers of a unit that fit in only k cells: those cells hold nothing else
+    private static boolean hiddenSubsets(SudokuCandidates grid, int k, Scratch scratch)
+    {
+        final SudokuGeometry geometry = grid.getGeometry();
+        final int size = geometry.size;
+        final long[] positions = scratch.positions;
+        final int[] subset = scratch.subset;
+        boolean eliminated = false;
+
+        for(int unit = 0; unit < 3*size; unit++)
+        {
+            final int[] cells = fillPositions(grid, unit, positions);
+            int count = 0;
+            for(int n = 0; n < size; n++)
+            {
+                final int places = Long.bitCount(positions[n]);
+                if(places >= 2 && places <= k)
+                    subset[count++] = n;
+            }
+            eliminated |= hiddenSubsets(grid, cells, positions, subset, count, k, 0, 0, 0L, 0L);
+        }
+        return eliminated;
+    }
+
+    //positions[n]: the positions in unit of the cells where number n fits; returns the cells of unit
+    private static int[] fillPositions(SudokuCandidates grid, int unit, long[] positions)
+    {
+        final int[] cells = grid.getGeometry().units[unit];
+        Arrays.fill(positions, 0);
+        for(int i = 0; i < cells.length; i++)
+            for(long candidates = grid.getCandidates(cells[i]); candidates != 0; candidates &= candidates - 1)
+                positions[Long.numberOfTrailingZeros(candidates)] |= 1L << i;
+        return cells;
+    }
+
+    //numbers: the numbers picked so far, chosen: the positions where they fit
+    private static boolean hiddenSubsets(SudokuCandidates grid, int[] cells, long[] positions, int[] subset,
+        int count, int k, int start, int depth, long numbers, long chosen)
+    {
+        if(Long.bitCount(chosen) > k)
+            return false;
+
+        if(depth == k)
+        {
+            boolean eliminated = false;
+            for(long places = chosen; places != 0; places &= places - 1)
+            {
+                final int cell = cells[Long.numberOfTrailingZeros(places)];
+                final long others = grid.getCandidates(cell) & ~numbers;
+                if(others != 0)
+                {
+                    grid.eliminate(cell, others);
+                    eliminated = true;
+                }
+            }
+            return eliminated;
+        }
+
+        boolean eliminated = false;
+        for(int s = start; s < count; s++)
+        {
+            final int n = subset[s];
+            eliminated |= hiddenSubsets(grid, cells, positions, subset, count, k, s + 1, depth + 1,
+                numbers | (1L << n), chosen | positions[n]);
+        }
+        return eliminated;
+    }
+
+    /**
+     * For every number, two base lines (units from base on) where it fits
+     * in the same two places: the crossing lines (units from cover on)
+     * through those places lose it everywhere else.
+     */
+    private static boolean xWing(SudokuCandidates grid, int base, int cover, long[] places)
+    {
+        final SudokuGeometry geometry = grid.getGeometry();
+        final int size = geometry.size;
+        boolean eliminated = false;
+
+        for(int n = 0; n < size; n++)
+        {
+            final long bit = 1L << n;
+            for(int line = 0; line < size; line++)
+            {
+                places[line] = 0;
+                final int[] cells = geometry.units[base + line];
+                for(int i = 0; i < size; i++)
+                    if((grid.getCandidates(cells[i]) & bit) != 0)
+                        places[line] |= 1L << i;
+            }
+
+            for(int first = 0; first < size; first++)
+            {
+                if(Long.bitCount(places[first]) != 2)
+                    continue;
+                for(int second = first + 1; second < size; second++)
+                {
+                    if(places[second] != places[first])
+                        continue;
+
+                    for(long crossing = places[first]; crossing != 0; crossing &= crossing - 1)
+                    {
+                        final int line = cover + Long.numberOfTrailingZeros(crossing);
+                        for(int cell : geometry.units[line])
+                            if((grid.getCandidates(cell) & bit) != 0
+                                && !isInUnit(geometry, base + first, cell) && !isInUnit(geometry, base + second, cell))
+                            {
+                                grid.eliminate(cell, bit);
+                                eliminated = true;
+                            }
+                    }
+                }
+            }
+        }
+        return eliminated;
+    }
+}
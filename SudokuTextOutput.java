@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Boards as text, formatted into a reusable byte buffer and written in large
+ * blocks. Each layout is a byte template of one board with the offset of
+ * every cell in it, so formatting a board is one copy of the template and
+ * one store per cell.
+ *
+ * The grid layout is what {@link SudokuGame#printBoardSimple} prints, each
+ * board preceded by an empty line and followed by a line of #. The compact
+ * layout is one board per line. The text parser reads both back. The cells
+ * layout is the compact one without the line end, for outputs appending
+ * more to every board.
+ */
+class SudokuTextOutput implements SudokuOutput {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final byte[] template;
+    private final int[] cellOffsets;
+    private final int size;
+
+    private final byte[] buffer;
+    private int length = 0;
+
+    private SudokuTextOutput(OutputStream out, int size, String template, int[] cellOffsets)
+    {
+        this.out = out;
+        this.size = size;
+        this.template = template.getBytes(StandardCharsets.US_ASCII);
+        this.cellOffsets = cellOffsets;
+        this.buffer = new byte[Math.max(BUFFER_SIZE, this.template.length)];
+    }
+
+    //spaced rows, regions split by tabs and empty lines
+    public static SudokuTextOutput grid(OutputStream out, int size)
+    {
+        final String newLine = System.lineSeparator();
+        final int box = SudokuGeometry.of(size).boxSize;
+        final int[] cellOffsets = new int[size*size];
+
+        StringBuilder template = new StringBuilder(newLine);
+        for(int l = 0; l < size; l++)
+        {
+            for(int c = 0; c < size; c++)
+            {
+                cellOffsets[l*size + c] = template.length();
+                template.append('.');
+                if(c < size - 1)
+                    template.append(' ');
+
+                if((c + 1)%box == 0 && c < size - 1)
+                    template.append('\t');
+            }
+            if((l + 1)%box == 0)
+                template.append(newLine);
+            template.append(newLine);
+        }
+        template.append("#####################").append(newLine);
+
+        return new SudokuTextOutput(out, size, template.toString(), cellOffsets);
+    }
+
+    //one line of size*size cells per board
+    public static SudokuTextOutput compact(OutputStream out, int size)
+    {
+        return cells(out, size, System.lineSeparator());
+    }
+
+    //size*size cells per board, then what append adds
+    static SudokuTextOutput cells(OutputStream out, int size)
+    {
+        return cells(out, size, "");
+    }
+
+    private static SudokuTextOutput cells(OutputStream out, int size, String end)
+    {
+        final int[] cellOffsets = new int[size*size];
+        for(int i = 0; i < cellOffsets.length; i++)
+            cellOffsets[i] = i;
+
+        return new SudokuTextOutput(out, size, ".".repeat(size*size) + end, cellOffsets);
+    }
+
+    @Override
+    public void write(char[][] board, long result) throws IOException
+    {
+        assert board.length == size;
+
+        if(buffer.length - length < template.length)
+            writeBuffer();
+
+        final int start = length;
+        System.arraycopy(template, 0, buffer, start, template.length);
+        for(int r = 0, i = 0; r < size; r++)
+        {
+            final char[] row = board[r];
+            for(int c = 0; c < size; c++, i++)
+                buffer[start + cellOffsets[i]] = (byte) row[c];
+        }
+        length += template.length;
+    }
+
+    //written right after the last board, bytes no longer than the buffer
+    void append(byte[] bytes) throws IOException
+    {
+        if(buffer.length - length < bytes.length)
+            writeBuffer();
+
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeBuffer() throws IOException
+    {
+        if(length == 0) return;
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        writeBuffer();
+        out.flush();
+
+        //a PrintStream swallows its errors
+        if(out instanceof PrintStream && ((PrintStream) out).checkError())
+            throw new IOException("Error writing text output");
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Cheap checks run on every board as it is read, before a solver is set up
+ * for it: the board shape, numbers given twice in a unit, and free cells
+ * left without a candidate by the clues. One pass builds the row, column
+ * and region masks of the clues, a second one checks the free cells.
+ *
+ * Passing boards can still have no solution; the solvers find that out.
+ */
+final class SudokuValidator {
+
+    private final SudokuGeometry geometry;
+    private final int size;
+
+    private final long[] rowsNumbers;
+    private final long[] columnsNumbers;
+    private final long[] regionsNumbers;
+
+    public SudokuValidator(int size)
+    {
+        this.geometry = SudokuGeometry.of(size);
+        this.size = size;
+        this.rowsNumbers = new long[size];
+        this.columnsNumbers = new long[size];
+        this.regionsNumbers = new long[size];
+    }
+
+    /**
+     * Returns why the board must be rejected, or null when it passes.
+     * index and line only label the reject.
+     */
+    public SudokuReject validate(char[][] board, long index, long line)
+    {
+        if(board.length != size)
+            return new SudokuReject(index, line, SudokuReject.Reason.SHAPE, -1, -1, ' ');
+        for(char[] row : board)
+            if(row.length != size)
+                return new SudokuReject(index, line, SudokuReject.Reason.SHAPE, -1, -1, ' ');
+
+        for(int i = 0; i < size; i++)
+        {
+            rowsNumbers[i] = 0;
+            columnsNumbers[i] = 0;
+            regionsNumbers[i] = 0;
+        }
+
+        for(int r = 0, cell = 0; r < size; r++)
+            for(int c = 0; c < size; c++, cell++)
+            {
+                final int n = geometry.toNumber(board[r][c]);
+                if(n == SudokuCell.FREE_CELL)
+                    continue;
+
+                final long bit = 1L << n;
+                final int region = geometry.regionOf[cell];
+                if(((rowsNumbers[r] | columnsNumbers[c] | regionsNumbers[region]) & bit) != 0)
+                    return new SudokuReject(index, line, SudokuReject.Reason.DUPLICATE, r, c, board[r][c]);
+
+                rowsNumbers[r] |= bit;
+                columnsNumbers[c] |= bit;
+                regionsNumbers[region] |= bit;
+            }
+
+        final long allNumbers = geometry.allNumbers;
+        for(int r = 0, cell = 0; r < size; r++)
+            for(int c = 0; c < size; c++, cell++)
+                if(geometry.toNumber(board[r][c]) == SudokuCell.FREE_CELL
+                    && (rowsNumbers[r] | columnsNumbers[c] | regionsNumbers[geometry.regionOf[cell]]) == allNumbers)
+                    return new SudokuReject(index, line, SudokuReject.Reason.NO_CANDIDATE, r, c, board[r][c]);
+
+        return null;
+    }
+}
@@ -1,8 +1,31 @@
 #!/bin/bash
 
-time (
-    seq 500 | 
-    sed 'c sudoku_2.txt' | 
-    xargs cat | 
-    java -cp bin Sudoku > /dev/null
-)
\ No newline at end of file
+# Wall clock of whole runs, JVM startup and printing included.
+# Per component throughput and allocation: java -cp bin SudokuBenchmark
+# Zero allocation of the solvers, exit status 1 otherwise: java -cp bin SudokuBenchmark --check-allocation
+# The sweep engine uses the vector kernels when vector/ is compiled into bin.
+
+JAVA="java --add-modules jdk.incubator.vector"
+
+for engine in propagation dlx sweep; do
+    for file in sudoku.txt sudoku_2.txt; do
+        echo "engine: $engine, input: 500 x $file"
+        time (
+            seq 500 | 
+            sed "c $file" | 
+            xargs cat | 
+            $JAVA -cp bin Sudoku --engine=$engine > /dev/null 2>&1
+        )
+    done
+
+    for size in 16 25; do
+        file=sudoku_$size.txt
+        echo "engine: $engine, input: 50 x $file"
+        time (
+            seq 50 | 
+            sed "c $file" | 
+            xargs cat | 
+            $JAVA -cp bin Sudoku --engine=$engine --size=$size > /dev/null 2>&1
+        )
+    done
+done
@@ -0,0 +1,142 @@
+import java.util.Arrays;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The sweep kernels on the vector API, as many cells or units per step as
+ * the preferred int vector holds. Unit masks are gathered through index
+ * tables: the row, column and region unit of every cell, and the k-th cell
+ * of every unit, so one step reads the k-th cell of several units at once.
+ *
+ * Loaded reflectively by {@link SudokuLanes#of}; see there how to build and
+ * run it.
+ */
+final class SudokuVectorLanes implements SudokuLanes {
+
+    //at most 256 bits: the 512 bit code C2 of JDK 17 compiles for these kernels can crash
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED.length() > 8
+        ? IntVector.SPECIES_256
+        : IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private final SudokuGeometry geometry;
+    private final int nCells;
+    private final int nUnits;
+    private final int allNumbers;
+
+    //-1 past the last cell, so padding lanes look placed
+    private final int[] padding;
+
+    //units of every cell, padded with unit 0
+    private final int[] rowUnit;
+    private final int[] columnUnit;
+    private final int[] regionUnit;
+
+    //unitCells[k][u]: the k-th cell of unit u, padded with cell 0
+    private final int[][] unitCells;
+
+    SudokuVectorLanes(SudokuGeometry geometry)
+    {
+        if(LANES > PADDING)
+            throw new IllegalStateException("Vectors of " + LANES + " ints are wider than the padding");
+
+        this.geometry = geometry;
+        this.nCells = geometry.nCells;
+        this.nUnits = 3*geometry.size;
+        this.allNumbers = (int) geometry.allNumbers;
+
+        final int size = geometry.size;
+        padding = new int[cellCapacity()];
+        Arrays.fill(padding, nCells, padding.length, -1);
+
+        rowUnit = new int[cellCapacity()];
+        columnUnit = new int[cellCapacity()];
+        regionUnit = new int[cellCapacity()];
+        for(int i = 0; i < nCells; i++)
+        {
+            rowUnit[i] = geometry.rowOf[i];
+            columnUnit[i] = size + geometry.columnOf[i];
+            regionUnit[i] = 2*size + geometry.regionOf[i];
+        }
+
+        unitCells = new int[size][unitCapacity()];
+        for(int u = 0; u < nUnits; u++)
+            for(int k = 0; k < size; k++)
+                unitCells[k][u] = geometry.units[u][k];
+    }
+
+    @Override
+    public SudokuGeometry getGeometry()
+    {
+        return geometry;
+    }
+
+    @Override
+    public String describe()
+    {
+        return "vector (" + LANES + " lanes)";
+    }
+
+    @Override
+    public void unitOccurrences(int[] cells, int[] once, int[] twice)
+    {
+        final IntVector zero = IntVector.zero(SPECIES);
+        for(int u = 0; u < nUnits; u += LANES)
+        {
+            IntVector seen = zero, repeated = zero;
+            for(int[] kth : unitCells)
+            {
+                final IntVector v = IntVector.fromArray(SPECIES, cells, 0, kth, u);
+                repeated = repeated.or(seen.and(v));
+                seen = seen.or(v);
+            }
+            seen.intoArray(once, u);
+            repeated.intoArray(twice, u);
+        }
+    }
+
+    @Override
+    public int sweep(int[] placed, int[] unitNumbers, int[] candidates)
+    {
+        final IntVector zero = IntVector.zero(SPECIES);
+        int singles = 0;
+        for(int i = 0; i < nCells; i += LANES)
+        {
+            final IntVector p = IntVector.fromArray(SPECIES, placed, i);
+            final VectorMask<Integer> free = p.or(IntVector.fromArray(SPECIES, padding, i)).compare(VectorOperators.EQ, 0);
+            final IntVector used = IntVector.fromArray(SPECIES, unitNumbers, 0, rowUnit, i)
+                .or(IntVector.fromArray(SPECIES, unitNumbers, 0, columnUnit, i))
+                .or(IntVector.fromArray(SPECIES, unitNumbers, 0, regionUnit, i));
+
+            final IntVector c = zero.blend(used.not().and(allNumbers), free);
+            c.intoArray(candidates, i);
+            if(c.compare(VectorOperators.EQ, 0).and(free).anyTrue())
+                return -1;
+
+            final VectorMask<Integer> single = c.and(c.sub(1)).compare(VectorOperators.EQ, 0).and(free);
+            if(single.anyTrue())
+            {
+                p.blend(c, single).intoArray(placed, i);
+                singles += single.trueCount();
+            }
+        }
+        return singles;
+    }
+
+    @Override
+    public void counts(int[] candidates, int[] counts)
+    {
+        //bit counts summed in pairs, nibbles, then bytes
+        for(int i = 0; i < nCells; i += LANES)
+        {
+            IntVector x = IntVector.fromArray(SPECIES, candidates, i);
+            x = x.sub(x.lanewise(VectorOperators.LSHR, 1).and(0x55555555));
+            x = x.and(0x33333333).add(x.lanewise(VectorOperators.LSHR, 2).and(0x33333333));
+            x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(0x0f0f0f0f);
+            x.mul(0x01010101).lanewise(VectorOperators.LSHR, 24).intoArray(counts, i);
+        }
+    }
+}